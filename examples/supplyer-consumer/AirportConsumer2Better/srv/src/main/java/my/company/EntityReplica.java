@@ -0,0 +1,135 @@
+package my.company;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process copy of one remote entity set, kept current by {@link MeataReplicator}.
+ * Readers never block; a sync replaces or updates single rows in a concurrent map.
+ */
+public class EntityReplica<K, T> {
+
+	private final String name;
+	private final Function<T, K> keyOf;
+	private final Function<T, ZonedDateTime> modifiedAtOf;
+	private final Comparator<T> order;
+	private final Map<K, T> rows = new ConcurrentHashMap<>();
+	private final AtomicLong syncs = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong rowsApplied = new AtomicLong();
+	private volatile ZonedDateTime watermark;
+	private volatile long lastSyncMillis;
+	private volatile boolean loaded;
+
+	/**
+	 * @param modifiedAtOf the modifiedAt of a row, or null for entities without the managed aspect
+	 */
+	public EntityReplica(String name, Function<T, K> keyOf, Function<T, ZonedDateTime> modifiedAtOf, Comparator<T> order) {
+		this.name = name;
+		this.keyOf = keyOf;
+		this.modifiedAtOf = modifiedAtOf;
+		this.order = order;
+	}
+
+	/**
+	 * Replaces all rows, dropping the ones the remote side no longer has.
+	 */
+	public void replaceAll(List<T> remoteRows) {
+		Map<K, T> loadedRows = new HashMap<>();
+		for (T row : remoteRows) {
+			loadedRows.put(keyOf.apply(row), row);
+		}
+		rows.putAll(loadedRows);
+		rows.keySet().retainAll(loadedRows.keySet());
+		watermark = null;
+		advance(remoteRows);
+		loaded = true;
+	}
+
+	/**
+	 * Inserts or updates the rows of a delta.
+	 */
+	public void apply(List<T> changedRows) {
+		for (T row : changedRows) {
+			rows.put(keyOf.apply(row), row);
+		}
+		advance(changedRows);
+	}
+
+	public void failed() {
+		failures.incrementAndGet();
+	}
+
+	private void advance(List<T> syncedRows) {
+		if (modifiedAtOf != null) {
+			for (T row : syncedRows) {
+				ZonedDateTime modifiedAt = modifiedAtOf.apply(row);
+				if (modifiedAt != null && (watermark == null || modifiedAt.isAfter(watermark))) {
+					watermark = modifiedAt;
+				}
+			}
+		}
+		rowsApplied.addAndGet(syncedRows.size());
+		syncs.incrementAndGet();
+		lastSyncMillis = System.currentTimeMillis();
+	}
+
+	public T get(K key) {
+		return rows.get(key);
+	}
+
+	public List<T> getAll() {
+		List<T> all = new ArrayList<>(rows.values());
+		all.sort(order);
+		return all;
+	}
+
+	/**
+	 * True once the replica was fully loaded and its last sync is at most maxStalenessMillis old.
+	 */
+	public boolean isFresh(long maxStalenessMillis) {
+		return loaded && getLagMillis() <= maxStalenessMillis;
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Time since the last successful sync, or -1 before the initial load.
+	 */
+	public long getLagMillis() {
+		return loaded ? System.currentTimeMillis() - lastSyncMillis : -1;
+	}
+
+	public ZonedDateTime getWatermark() {
+		return watermark;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int size() {
+		return rows.size();
+	}
+
+	public long getSyncs() {
+		return syncs.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public long getRowsApplied() {
+		return rowsApplied.get();
+	}
+}
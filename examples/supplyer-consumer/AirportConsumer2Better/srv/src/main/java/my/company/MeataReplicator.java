@@ -0,0 +1,126 @@
+package my.company;
+
+import com.sap.cloud.sdk.cloudplatform.logging.CloudLoggerFactory;
+import com.sap.cloud.sdk.s4hana.connectivity.ErpConfigContext;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.helper.ExpressionFluentHelper;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Pilot;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Plane;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Plane_texts;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.services.DefaultMeataService;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.services.MeataService;
+import org.slf4j.Logger;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps local replicas of the remote Pilots, Planes and Plane_texts.
+ * After an initial full load, Pilots and Planes are polled for rows with modifiedAt at or after the watermark.
+ * Plane_texts have no modifiedAt, so the texts of changed planes are re-read with them.
+ * Deletions are only seen by the full reload every airport.replica.fullReloadMinutes.
+ */
+public class MeataReplicator {
+
+	private static final Logger LOG = CloudLoggerFactory.getLogger(MeataReplicator.class.getName());
+
+	private static final long POLL_SECONDS = Long.getLong("airport.replica.pollSeconds", 30L);
+	private static final long FULL_RELOAD_MINUTES = Long.getLong("airport.replica.fullReloadMinutes", 60L);
+	static final long MAX_STALENESS_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("airport.replica.maxStalenessSeconds", 120L));
+
+	static final EntityReplica<Integer, Pilot> PILOTS =
+			new EntityReplica<>("Pilots", Pilot::getID, Pilot::getModifiedAt, Comparator.comparing(Pilot::getID));
+	static final EntityReplica<Integer, Plane> PLANES =
+			new EntityReplica<>("Planes", Plane::getID, Plane::getModifiedAt, Comparator.comparing(Plane::getID));
+	static final EntityReplica<String, Plane_texts> PLANE_TEXTS =
+			new EntityReplica<>("Plane_texts", text -> text.getLocale() + "/" + text.getID(), null,
+					Comparator.comparing(Plane_texts::getID).thenComparing(Plane_texts::getLocale));
+
+	private static ScheduledExecutorService scheduler;
+	private static long lastFullLoadMillis;
+
+	private MeataReplicator() {
+	}
+
+	public static synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "meata-replicator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(MeataReplicator::sync, 0, POLL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public static synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	static void sync() {
+		MeataService service = new DefaultMeataService();
+		boolean fullLoad = !PILOTS.isLoaded() || !PLANES.isLoaded() || !PLANE_TEXTS.isLoaded()
+				|| System.currentTimeMillis() - lastFullLoadMillis >= TimeUnit.MINUTES.toMillis(FULL_RELOAD_MINUTES);
+		try {
+			if (fullLoad) {
+				PILOTS.replaceAll(service.getAllPilot().execute(context()));
+				PLANES.replaceAll(service.getAllPlane().execute(context()));
+				PLANE_TEXTS.replaceAll(service.getAllPlane_texts().execute(context()));
+				lastFullLoadMillis = System.currentTimeMillis();
+				LOG.info("Replica loaded: {} pilots, {} planes, {} plane texts", PILOTS.size(), PLANES.size(), PLANE_TEXTS.size());
+				return;
+			}
+			syncPilots(service);
+			syncPlanes(service);
+		} catch (Exception e) {
+			// the replicas keep their rows; readers fall back to remote reads once they are too stale
+			PILOTS.failed();
+			PLANES.failed();
+			PLANE_TEXTS.failed();
+			LOG.error("Replica sync failed", e);
+		}
+	}
+
+	private static void syncPilots(MeataService service) throws Exception {
+		// ge rather than gt: rows sharing the watermark's timestamp may have been committed after the last poll
+		ZonedDateTime watermark = PILOTS.getWatermark();
+		List<Pilot> changed = watermark == null
+				? service.getAllPilot().execute(context())
+				: service.getAllPilot().filter(Pilot.MODIFIED_AT.ge(watermark)).execute(context());
+		PILOTS.apply(changed);
+	}
+
+	private static void syncPlanes(MeataService service) throws Exception {
+		ZonedDateTime watermark = PLANES.getWatermark();
+		List<Plane> changed = watermark == null
+				? service.getAllPlane().execute(context())
+				: service.getAllPlane().filter(Plane.MODIFIED_AT.ge(watermark)).execute(context());
+		PLANES.apply(changed);
+
+		Set<Integer> planeIds = new LinkedHashSet<>();
+		for (Plane plane : changed) {
+			planeIds.add(plane.getID());
+		}
+		ExpressionFluentHelper<Plane_texts> byPlane = null;
+		for (Integer planeId : planeIds) {
+			byPlane = byPlane == null ? Plane_texts.ID.eq(planeId) : byPlane.or(Plane_texts.ID.eq(planeId));
+		}
+		PLANE_TEXTS.apply(byPlane == null
+				? Collections.<Plane_texts>emptyList()
+				: service.getAllPlane_texts().filter(byPlane).execute(context()));
+	}
+
+	private static ErpConfigContext context() {
+		return new ErpConfigContext(RemoteCatalog.DESTINATION);
+	}
+}
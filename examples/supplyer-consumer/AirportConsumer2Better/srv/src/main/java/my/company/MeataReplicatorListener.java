@@ -0,0 +1,24 @@
+package my.company;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Runs the {@link MeataReplicator} for the lifetime of the application unless airport.replica.enabled is false.
+ */
+@WebListener
+public class MeataReplicatorListener implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		if (Boolean.parseBoolean(System.getProperty("airport.replica.enabled", "true"))) {
+			MeataReplicator.start();
+		}
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		MeataReplicator.stop();
+	}
+}
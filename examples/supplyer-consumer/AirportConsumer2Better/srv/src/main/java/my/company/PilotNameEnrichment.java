@@ -0,0 +1,39 @@
+package my.company;
+
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Pilot;
+import com.sap.cloud.sdk.service.prov.api.EntityData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the remote pilot's name to Airport rows. The pilot IDs of all rows are resolved together,
+ * so a result list costs at most one remote request instead of one per row.
+ */
+public class PilotNameEnrichment {
+
+	static final String PILOT_ID = "ID";
+	static final String PILOT_NAME = "pilotName";
+
+	private PilotNameEnrichment() {
+	}
+
+	public static void enrich(List<EntityData> rows) throws Exception {
+		List<Integer> pilotIds = new ArrayList<>(rows.size());
+		for (EntityData row : rows) {
+			pilotIds.add(pilotIdOf(row));
+		}
+
+		Map<Integer, Pilot> pilots = RemoteCatalog.getPilots(pilotIds);
+		for (int i = 0; i < rows.size(); i++) {
+			Pilot pilot = pilotIds.get(i) == null ? null : pilots.get(pilotIds.get(i));
+			rows.get(i).getMap().put(PILOT_NAME, pilot == null ? null : pilot.getName());
+		}
+	}
+
+	private static Integer pilotIdOf(EntityData row) {
+		Object id = row.getMap().get(PILOT_ID);
+		return id == null ? null : Integer.valueOf(id.toString());
+	}
+}
@@ -0,0 +1,581 @@
+package my.company;
+
+import com.sap.cloud.sdk.odatav2.connectivity.ODataQueryBuilder;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.helper.EntityField;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.helper.ExpressionFluentHelper;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.helper.FluentHelperRead;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.helper.Order;
+import com.sap.cloud.sdk.service.prov.api.filter.BinaryExpressionNode;
+import com.sap.cloud.sdk.service.prov.api.filter.Expression;
+import com.sap.cloud.sdk.service.prov.api.filter.LiteralNode;
+import com.sap.cloud.sdk.service.prov.api.filter.PropertyNode;
+import com.sap.cloud.sdk.service.prov.api.request.OrderByExpression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Maps the options of an incoming {@link QueryRequest} onto the fluent read API of one remote entity set.
+ * <p>
+ * Comparisons of a mapped property with a literal, joined with {@code and} and {@code or}, become the remote $filter.
+ * What cannot be sent, such as comparisons of two properties, and conditions the caller adds itself, are evaluated
+ * locally on the returned rows. Requests this class can evaluate neither way, for example $filter functions or
+ * unknown properties, are rejected with an {@link UnsupportedQueryException}.
+ * $select is narrowed to the requested properties plus the key and the properties the local conditions read.
+ * $orderby is always sent. $top and $skip are only sent when no rows are dropped locally; otherwise the page is cut
+ * locally. A requested inline count of a remotely cut page is fetched with a separate remote count query.
+ */
+public class QueryTranslator<E, S> {
+
+	private static final Map<String, String> CONVERSE = new LinkedHashMap<>();
+
+	static {
+		// the operator that compares the same way with the operands swapped
+		CONVERSE.put("GT", "LT");
+		CONVERSE.put("GE", "LE");
+		CONVERSE.put("LT", "GT");
+		CONVERSE.put("LE", "GE");
+	}
+
+	private final String entitySet;
+	private final Class<S> selectableType;
+	private final String keyProperty;
+	private final Map<String, Column<E, ?>> columns = new LinkedHashMap<>();
+
+	/**
+	 * @param selectableType the selectable interface the entity's fields implement
+	 * @param keyProperty    the property that is always selected
+	 */
+	public QueryTranslator(String entitySet, Class<S> selectableType, String keyProperty) {
+		this.entitySet = entitySet;
+		this.selectableType = selectableType;
+		this.keyProperty = keyProperty;
+	}
+
+	public <T extends Comparable<? super T>> QueryTranslator<E, S> column(EntityField<E, T> field, Class<T> type, Function<E, T> getter) {
+		columns.put(field.getFieldName(), new Column<>(field, type, getter));
+		return this;
+	}
+
+	/**
+	 * @throws UnsupportedQueryException if the request cannot be evaluated, which the caller should answer with 400
+	 */
+	public Plan<E, S> translate(QueryRequest request) throws UnsupportedQueryException {
+		Plan<E, S> plan = new Plan<>(this);
+		try {
+			if (request.getQueryExpression() != null) {
+				plan.filter = filter(request.getQueryExpression());
+			}
+			if (request.getOrderByProperties() != null) {
+				for (OrderByExpression orderBy : request.getOrderByProperties()) {
+					plan.orderBy.add(new OrderTerm<>(column(orderBy.getOrderByProperty()), orderBy.isDescending()));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			throw new UnsupportedQueryException(e.getMessage(), e);
+		}
+		if (request.getSelectProperties() != null && !request.getSelectProperties().isEmpty()) {
+			plan.select = new LinkedHashSet<>(request.getSelectProperties());
+		}
+		plan.top = Math.max(request.getTopOptionValue(), 0);
+		plan.skip = Math.max(request.getSkipOptionValue(), 0);
+		plan.inlineCount = request.isInlineCountRequested();
+		return plan;
+	}
+
+	private Column<E, ?> column(String property) {
+		Column<E, ?> column = columns.get(property);
+		if (column == null) {
+			throw new IllegalArgumentException("Unknown property " + property + " of " + entitySet);
+		}
+		return column;
+	}
+
+	private Filter<E> filter(Expression node) {
+		if (!(node instanceof BinaryExpressionNode)) {
+			throw new IllegalArgumentException("Unsupported $filter expression on " + entitySet + ": " + node);
+		}
+		BinaryExpressionNode binary = (BinaryExpressionNode) node;
+		String operator = String.valueOf(binary.getOperator()).toUpperCase(Locale.ROOT);
+		if ("AND".equals(operator)) {
+			return Filter.and(filter(binary.getFirstChild()), filter(binary.getSecondChild()));
+		}
+		if ("OR".equals(operator)) {
+			return Filter.or(filter(binary.getFirstChild()), filter(binary.getSecondChild()));
+		}
+		Expression first = binary.getFirstChild();
+		Expression second = binary.getSecondChild();
+		if (first instanceof PropertyNode && second instanceof LiteralNode) {
+			return column(((PropertyNode) first).getPath()).compare(operator, ((LiteralNode) second).getValue());
+		}
+		if (first instanceof LiteralNode && second instanceof PropertyNode) {
+			return column(((PropertyNode) second).getPath())
+					.compare(CONVERSE.getOrDefault(operator, operator), ((LiteralNode) first).getValue());
+		}
+		if (first instanceof PropertyNode && second instanceof PropertyNode) {
+			return column(((PropertyNode) first).getPath()).compare(operator, column(((PropertyNode) second).getPath()));
+		}
+		throw new IllegalArgumentException("Unsupported $filter expression on " + entitySet + ": " + operator);
+	}
+
+	/**
+	 * A request option that can be evaluated neither remotely nor locally.
+	 */
+	public static class UnsupportedQueryException extends Exception {
+
+		UnsupportedQueryException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	/**
+	 * The translation of one request. The caller may narrow it further before it is run.
+	 */
+	public static class Plan<E, S> {
+
+		private final QueryTranslator<E, S> translator;
+		private final List<OrderTerm<E>> orderBy = new ArrayList<>();
+		private Filter<E> filter;
+		private Set<String> select;
+		private int top;
+		private int skip;
+		private boolean inlineCount;
+
+		private Plan(QueryTranslator<E, S> translator) {
+			this.translator = translator;
+		}
+
+		/**
+		 * Adds the comparison {@code property operator literal}, for example {@code ("ID", "GT", 5)}.
+		 */
+		public Plan<E, S> and(String property, String operator, Object literal) {
+			return and(translator.column(property).compare(operator.toUpperCase(Locale.ROOT), literal));
+		}
+
+		/**
+		 * Adds a condition that is only evaluated locally.
+		 *
+		 * @param properties the properties the condition reads, so they are selected remotely
+		 */
+		public Plan<E, S> and(Predicate<E> condition, String... properties) {
+			for (String property : properties) {
+				translator.column(property);
+			}
+			return and(Filter.local(condition, new LinkedHashSet<>(Arrays.asList(properties))));
+		}
+
+		private Plan<E, S> and(Filter<E> condition) {
+			filter = filter == null ? condition : Filter.and(filter, condition);
+			return this;
+		}
+
+		/**
+		 * Restricts the selected properties to the given ones, whatever the request asked for.
+		 */
+		public Plan<E, S> selectOnly(String... properties) {
+			Set<String> allowed = new LinkedHashSet<>(Arrays.asList(properties));
+			if (select != null) {
+				allowed.retainAll(select);
+			}
+			select = allowed;
+			return this;
+		}
+
+		private boolean pagesRemotely() {
+			return filter == null || filter.residual == null;
+		}
+
+		/**
+		 * Whether the inline count has to be fetched with {@link #applyCountTo}, because the remote rows are only
+		 * the requested page.
+		 */
+		public boolean countsRemotely() {
+			return inlineCount && pagesRemotely() && (top > 0 || skip > 0);
+		}
+
+		/**
+		 * The properties to select remotely, or an empty list for all of them.
+		 */
+		private List<String> remoteSelect() {
+			if (select == null || !translator.columns.keySet().containsAll(select)) {
+				return Collections.emptyList();
+			}
+			Set<String> properties = new LinkedHashSet<>();
+			properties.add(translator.keyProperty);
+			properties.addAll(select);
+			if (filter != null) {
+				properties.addAll(filter.residualProperties);
+			}
+			return new ArrayList<>(properties);
+		}
+
+		/**
+		 * Sets the options that are sent to the remote service on a fresh fluent helper of the entity set.
+		 */
+		public <F extends FluentHelperRead<F, E, S>> F applyTo(F query) {
+			if (filter != null && filter.remote != null) {
+				query = query.filter(filter.remote);
+			}
+			List<String> properties = remoteSelect();
+			if (!properties.isEmpty()) {
+				List<S> selection = new ArrayList<>(properties.size());
+				for (String property : properties) {
+					selection.add(translator.selectableType.cast(translator.columns.get(property).field));
+				}
+				@SuppressWarnings("unchecked")
+				S[] fields = selection.toArray((S[]) Array.newInstance(translator.selectableType, 0));
+				query = query.select(fields);
+			}
+			for (OrderTerm<E> term : orderBy) {
+				query = query.orderBy(term.column.field, term.descending ? Order.DESC : Order.ASC);
+			}
+			if (pagesRemotely()) {
+				if (skip > 0) {
+					query = query.skip(skip);
+				}
+				if (top > 0) {
+					query = query.top(top);
+				}
+			}
+			return query;
+		}
+
+		/**
+		 * Sets up a query of the entity set for the $inlinecount of the remote filter; it returns at most one row.
+		 */
+		public ODataQueryBuilder applyCountTo(ODataQueryBuilder query) {
+			query = query.inlineCount().select(translator.keyProperty).top(1);
+			if (filter != null && filter.remote != null) {
+				query = query.filter(filter.remote.getDelegateExpressionWithoutOuterParentheses());
+			}
+			return query;
+		}
+
+		/**
+		 * The normalised remote count request, usable as a key for identical counts.
+		 */
+		public String getRemoteCountQuery() {
+			return filter != null && filter.remote != null
+					? translator.entitySet + "/$count?$filter=" + filter.text
+					: translator.entitySet + "/$count";
+		}
+
+		public String getEntitySet() {
+			return translator.entitySet;
+		}
+
+		/**
+		 * The normalised remote request, usable as a key for identical queries.
+		 */
+		public String getRemoteQuery() {
+			List<String> options = new ArrayList<>();
+			if (filter != null && filter.remote != null) {
+				options.add("$filter=" + filter.text);
+			}
+			List<String> properties = remoteSelect();
+			if (!properties.isEmpty()) {
+				options.add("$select=" + String.join(",", properties));
+			}
+			if (!orderBy.isEmpty()) {
+				List<String> terms = new ArrayList<>();
+				for (OrderTerm<E> term : orderBy) {
+					terms.add(term.column.name + (term.descending ? " desc" : ""));
+				}
+				options.add("$orderby=" + String.join(",", terms));
+			}
+			if (pagesRemotely() && skip > 0) {
+				options.add("$skip=" + skip);
+			}
+			if (pagesRemotely() && top > 0) {
+				options.add("$top=" + top);
+			}
+			return options.isEmpty() ? translator.entitySet : translator.entitySet + "?" + String.join("&", options);
+		}
+
+		/**
+		 * Finishes a remote result fetched with {@link #applyTo}: applies the local conditions and cuts the page.
+		 */
+		public Result<E> complete(List<E> remoteRows) {
+			List<E> rows = new ArrayList<>(remoteRows.size());
+			for (E row : remoteRows) {
+				if (filter == null || filter.residual == null || filter.residual.test(row)) {
+					rows.add(row);
+				}
+			}
+			return pagesRemotely() ? new Result<>(rows, rows.size()) : page(rows);
+		}
+
+		/**
+		 * Same as {@link #complete(List)} for a remotely cut page whose count was fetched with {@link #applyCountTo}.
+		 */
+		public Result<E> complete(List<E> remoteRows, int count) {
+			return new Result<>(complete(remoteRows).getRows(), count);
+		}
+
+		/**
+		 * Evaluates the whole request locally, for rows that were not fetched with {@link #applyTo}.
+		 */
+		public Result<E> evaluate(List<E> allRows) {
+			List<E> rows = new ArrayList<>(allRows.size());
+			for (E row : allRows) {
+				if (filter == null || filter.local.test(row)) {
+					rows.add(row);
+				}
+			}
+			Comparator<E> order = null;
+			for (OrderTerm<E> term : orderBy) {
+				order = order == null ? term.comparator() : order.thenComparing(term.comparator());
+			}
+			if (order != null) {
+				rows.sort(order);
+			}
+			return page(rows);
+		}
+
+		private Result<E> page(List<E> rows) {
+			int from = Math.min(skip, rows.size());
+			int to = top > 0 ? Math.min(from + top, rows.size()) : rows.size();
+			return new Result<>(new ArrayList<>(rows.subList(from, to)), rows.size());
+		}
+	}
+
+	public static class Result<E> {
+
+		private final List<E> rows;
+		private final int count;
+
+		Result(List<E> rows, int count) {
+			this.rows = rows;
+			this.count = count;
+		}
+
+		public List<E> getRows() {
+			return rows;
+		}
+
+		/**
+		 * Rows matching the filter before $top and $skip; only exact when an inline count was requested.
+		 */
+		public int getCount() {
+			return count;
+		}
+	}
+
+	private static class Column<E, T extends Comparable<? super T>> {
+
+		private static final Set<String> OPERATORS = new LinkedHashSet<>(Arrays.asList("EQ", "NE", "GT", "GE", "LT", "LE"));
+
+		private final String name;
+		private final EntityField<E, T> field;
+		private final Class<T> type;
+		private final Function<E, T> getter;
+
+		Column(EntityField<E, T> field, Class<T> type, Function<E, T> getter) {
+			this.name = field.getFieldName();
+			this.field = field;
+			this.type = type;
+			this.getter = getter;
+		}
+
+		Filter<E> compare(String operator, Object literal) {
+			if (!OPERATORS.contains(operator)) {
+				throw new IllegalArgumentException("Unsupported $filter operator " + operator + " on " + name);
+			}
+			T value = type.cast(coerce(literal));
+			Predicate<E> local = row -> matches(getter.apply(row), operator, value);
+			String text = name + " " + operator.toLowerCase(Locale.ROOT) + " " + (value instanceof String
+					? "'" + ((String) value).replace("'", "''") + "'"
+					: String.valueOf(value));
+			Set<String> properties = Collections.singleton(name);
+			if (value == null) {
+				// comparisons with null are not offered by the fluent API
+				return new Filter<>(null, local, local, text, properties, properties);
+			}
+			ExpressionFluentHelper<E> remote;
+			switch (operator) {
+				case "EQ": remote = field.eq(value); break;
+				case "NE": remote = field.ne(value); break;
+				case "GT": remote = field.gt(value); break;
+				case "GE": remote = field.ge(value); break;
+				case "LT": remote = field.lt(value); break;
+				default: remote = field.le(value); break;
+			}
+			return new Filter<>(remote, null, local, text, properties, Collections.emptySet());
+		}
+
+		/**
+		 * Compares the column with another column of the same row, which the fluent API cannot send.
+		 */
+		Filter<E> compare(String operator, Column<E, ?> other) {
+			if (!OPERATORS.contains(operator)) {
+				throw new IllegalArgumentException("Unsupported $filter operator " + operator + " on " + name);
+			}
+			if (other.type != type) {
+				throw new IllegalArgumentException("Cannot compare " + name + " with " + other.name);
+			}
+			@SuppressWarnings("unchecked")
+			Function<E, T> otherGetter = (Function<E, T>) other.getter;
+			Set<String> properties = new LinkedHashSet<>(Arrays.asList(name, other.name));
+			return Filter.local(row -> matches(getter.apply(row), operator, otherGetter.apply(row)), properties);
+		}
+
+		private static <T extends Comparable<? super T>> boolean matches(T actual, String operator, T value) {
+			if (actual == null || value == null) {
+				boolean equal = actual == value;
+				return "EQ".equals(operator) ? equal : "NE".equals(operator) && !equal;
+			}
+			int comparison = actual.compareTo(value);
+			switch (operator) {
+				case "EQ": return comparison == 0;
+				case "NE": return comparison != 0;
+				case "GT": return comparison > 0;
+				case "GE": return comparison >= 0;
+				case "LT": return comparison < 0;
+				default: return comparison <= 0;
+			}
+		}
+
+		/**
+		 * Converts a $filter literal to the Java type of the column.
+		 */
+		private Object coerce(Object literal) {
+			if (literal == null || type.isInstance(literal)) {
+				return literal;
+			}
+			try {
+				if (type == Integer.class) {
+					return literal instanceof Number
+							? new BigDecimal(literal.toString()).intValueExact()
+							: Integer.valueOf(literal.toString().trim());
+				}
+				if (type == String.class) {
+					return literal.toString();
+				}
+				if (type == ZonedDateTime.class) {
+					if (literal instanceof Calendar) {
+						return ((Calendar) literal).toInstant().atZone(((Calendar) literal).getTimeZone().toZoneId());
+					}
+					if (literal instanceof Date) {
+						return ((Date) literal).toInstant().atZone(ZoneOffset.UTC);
+					}
+					return ZonedDateTime.parse(literal.toString());
+				}
+				if (type == LocalDateTime.class) {
+					if (literal instanceof Timestamp) {
+						return ((Timestamp) literal).toLocalDateTime();
+					}
+					if (literal instanceof Calendar) {
+						return LocalDateTime.ofInstant(((Calendar) literal).toInstant(), ((Calendar) literal).getTimeZone().toZoneId());
+					}
+					if (literal instanceof Date) {
+						return LocalDateTime.ofInstant(((Date) literal).toInstant(), ZoneOffset.UTC);
+					}
+					return LocalDateTime.parse(literal.toString());
+				}
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Cannot compare " + name + " with " + literal, e);
+			}
+			throw new IllegalArgumentException("Cannot compare " + name + " with " + literal);
+		}
+	}
+
+	/**
+	 * A translated condition: the part sent to the remote service, the part left to check locally, and the whole
+	 * condition as a local check.
+	 */
+	private static class Filter<E> {
+
+		private final ExpressionFluentHelper<E> remote;
+		private final Predicate<E> residual;
+		private final Predicate<E> local;
+		private final String text;
+		private final Set<String> properties;
+		private final Set<String> residualProperties;
+
+		Filter(ExpressionFluentHelper<E> remote, Predicate<E> residual, Predicate<E> local, String text,
+				Set<String> properties, Set<String> residualProperties) {
+			this.remote = remote;
+			this.residual = residual;
+			this.local = local;
+			this.text = text;
+			this.properties = properties;
+			this.residualProperties = residualProperties;
+		}
+
+		static <E> Filter<E> local(Predicate<E> condition, Set<String> properties) {
+			return new Filter<>(null, condition, condition, null, properties, properties);
+		}
+
+		static <E> Filter<E> and(Filter<E> left, Filter<E> right) {
+			ExpressionFluentHelper<E> remote;
+			String text;
+			if (left.remote == null || right.remote == null) {
+				remote = left.remote == null ? right.remote : left.remote;
+				text = left.remote == null ? right.text : left.text;
+			} else {
+				remote = left.remote.and(right.remote);
+				text = "(" + left.text + " and " + right.text + ")";
+			}
+			Predicate<E> residual = left.residual == null ? right.residual
+					: right.residual == null ? left.residual : left.residual.and(right.residual);
+			return new Filter<>(remote, residual, left.local.and(right.local), text,
+					union(left.properties, right.properties), union(left.residualProperties, right.residualProperties));
+		}
+
+		static <E> Filter<E> or(Filter<E> left, Filter<E> right) {
+			Predicate<E> local = left.local.or(right.local);
+			Set<String> properties = union(left.properties, right.properties);
+			if (left.remote == null || left.residual != null || right.remote == null || right.residual != null) {
+				// an or can only be sent as a whole
+				return new Filter<>(null, local, local, null, properties, properties);
+			}
+			return new Filter<>(left.remote.or(right.remote), null, local, "(" + left.text + " or " + right.text + ")",
+					properties, Collections.emptySet());
+		}
+
+		private static Set<String> union(Set<String> left, Set<String> right) {
+			Set<String> union = new LinkedHashSet<>(left);
+			union.addAll(right);
+			return union;
+		}
+	}
+
+	private static class OrderTerm<E> {
+
+		private final Column<E, ?> column;
+		private final boolean descending;
+
+		OrderTerm(Column<E, ?> column, boolean descending) {
+			this.column = column;
+			this.descending = descending;
+		}
+
+		Comparator<E> comparator() {
+			Comparator<E> comparator = comparing(column);
+			return descending ? comparator.reversed() : comparator;
+		}
+
+		private static <E, T extends Comparable<? super T>> Comparator<E> comparing(Column<E, T> column) {
+			return Comparator.comparing(column.getter, Comparator.nullsFirst(Comparator.<T>naturalOrder()));
+		}
+	}
+}
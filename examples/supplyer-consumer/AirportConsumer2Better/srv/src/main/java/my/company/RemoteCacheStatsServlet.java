@@ -0,0 +1,44 @@
+package my.company;
+
+import com.google.common.cache.CacheStats;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hit and miss counts of the caches in front of the remote airport service, and how many remote
+ * calls were shared between concurrent callers.
+ */
+@WebServlet("/cache/stats")
+public class RemoteCacheStatsServlet extends HttpServlet {
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter writer = resp.getWriter();
+		List<RemoteEntityCache<?>> caches = Arrays.asList(RemoteCatalog.PILOTS, RemoteCatalog.PLANES);
+		for (RemoteEntityCache<?> cache : caches) {
+			CacheStats found = cache.getFoundStats();
+			CacheStats missing = cache.getMissingStats();
+			writer.println(cache.getName()
+					+ " size=" + cache.size()
+					+ " hits=" + found.hitCount()
+					+ " missingHits=" + missing.hitCount()
+					+ " remoteReads=" + cache.getRemoteReads()
+					+ " evictions=" + (found.evictionCount() + missing.evictionCount()));
+		}
+		SingleFlight remote = RemoteCatalog.REMOTE;
+		writer.println("Coalescing"
+				+ " requests=" + remote.getRequests()
+				+ " remoteCalls=" + remote.getExecutions()
+				+ " coalesced=" + remote.getCoalesced()
+				+ " ratio=" + String.format("%.3f", remote.getCoalescingRatio()));
+	}
+}
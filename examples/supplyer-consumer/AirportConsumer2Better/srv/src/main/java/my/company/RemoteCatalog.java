@@ -0,0 +1,173 @@
+package my.company;
+
+import com.sap.cloud.sdk.odatav2.connectivity.ODataException;
+import com.sap.cloud.sdk.odatav2.connectivity.ODataQueryBuilder;
+import com.sap.cloud.sdk.s4hana.connectivity.ErpConfigContext;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.helper.ExpressionFluentHelper;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Pilot;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Plane;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.selectable.PilotSelectable;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.selectable.PlaneSelectable;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.services.DefaultMeataService;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.services.MeataService;
+
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads of Pilots and Planes from the remote airport service. Reads by ID are cached per ID;
+ * identical reads that run at the same time share one remote call.
+ */
+public class RemoteCatalog {
+
+	static final String DESTINATION = "airport-destination";
+	private static final int MAX_IDS_PER_REQUEST = Integer.getInteger("airport.enrich.maxIdsPerRequest", 100);
+
+	static final RemoteEntityCache<Pilot> PILOTS = new RemoteEntityCache<>("Pilots");
+	static final RemoteEntityCache<Plane> PLANES = new RemoteEntityCache<>("Planes");
+
+	/**
+	 * Shares identical concurrent remote queries; keys are the entity set followed by the key or query options.
+	 */
+	static final SingleFlight REMOTE = new SingleFlight();
+
+	static final QueryTranslator<Pilot, PilotSelectable> PILOT_QUERIES =
+			new QueryTranslator<Pilot, PilotSelectable>("Pilot", PilotSelectable.class, "ID")
+					.column(Pilot.ID, Integer.class, Pilot::getID)
+					.column(Pilot.NAME, String.class, Pilot::getName)
+					.column(Pilot.DATE_OF_BIRTH, LocalDateTime.class, Pilot::getDateOfBirth)
+					.column(Pilot.PLACE_OF_BIRTH, String.class, Pilot::getPlaceOfBirth)
+					.column(Pilot.CREATED_AT, ZonedDateTime.class, Pilot::getCreatedAt)
+					.column(Pilot.CREATED_BY, String.class, Pilot::getCreatedBy)
+					.column(Pilot.MODIFIED_AT, ZonedDateTime.class, Pilot::getModifiedAt)
+					.column(Pilot.MODIFIED_BY, String.class, Pilot::getModifiedBy);
+
+	static final QueryTranslator<Plane, PlaneSelectable> PLANE_QUERIES =
+			new QueryTranslator<Plane, PlaneSelectable>("Plane", PlaneSelectable.class, "ID")
+					.column(Plane.ID, Integer.class, Plane::getID)
+					.column(Plane.DESCR, String.class, Plane::getDescr)
+					.column(Plane.CREATED_AT, ZonedDateTime.class, Plane::getCreatedAt)
+					.column(Plane.CREATED_BY, String.class, Plane::getCreatedBy)
+					.column(Plane.MODIFIED_AT, ZonedDateTime.class, Plane::getModifiedAt)
+					.column(Plane.MODIFIED_BY, String.class, Plane::getModifiedBy);
+
+	private RemoteCatalog() {
+	}
+
+	/**
+	 * @return the pilot, or null if the remote service does not have it
+	 */
+	public static Pilot getPilot(Integer id) throws Exception {
+		return PILOTS.get(id, key -> REMOTE.execute("Pilot(" + key + ")", () -> {
+			MeataService service = new DefaultMeataService();
+			try {
+				return service.getPilotByKey(key).execute(new ErpConfigContext(DESTINATION));
+			} catch (ODataException e) {
+				// a failed read by key is only a missing pilot if a query for the key comes back empty
+				if (service.getAllPilot().select(Pilot.ID).filter(Pilot.ID.eq(key)).top(1)
+						.execute(new ErpConfigContext(DESTINATION)).isEmpty()) {
+					return null;
+				}
+				throw e;
+			}
+		}));
+	}
+
+	/**
+	 * Resolves several pilots with at most one remote request, for enriching result lists.
+	 * IDs the remote service does not have are left out of the result.
+	 */
+	public static Map<Integer, Pilot> getPilots(Collection<Integer> ids) throws Exception {
+		if (MeataReplicator.PILOTS.isFresh(MeataReplicator.MAX_STALENESS_MILLIS)) {
+			Map<Integer, Pilot> pilots = new HashMap<>();
+			for (Integer id : ids) {
+				Pilot pilot = id == null ? null : MeataReplicator.PILOTS.get(id);
+				if (pilot != null) {
+					pilots.put(id, pilot);
+				}
+			}
+			return pilots;
+		}
+		return PILOTS.getAll(ids, RemoteCatalog::loadPilots);
+	}
+
+	private static Map<Integer, Pilot> loadPilots(Set<Integer> ids) throws Exception {
+		Map<Integer, Pilot> pilotsById = new HashMap<>();
+		List<Integer> idList = new ArrayList<>(ids);
+		// very long lists are split so that the request URL stays within the usual limits
+		for (int from = 0; from < idList.size(); from += MAX_IDS_PER_REQUEST) {
+			List<Integer> chunk = idList.subList(from, Math.min(from + MAX_IDS_PER_REQUEST, idList.size()));
+			// the OData V2 VDM has no "in", so the IDs are or-ed
+			ExpressionFluentHelper<Pilot> byId = null;
+			for (Integer id : chunk) {
+				byId = byId == null ? Pilot.ID.eq(id) : byId.or(Pilot.ID.eq(id));
+			}
+			ExpressionFluentHelper<Pilot> filter = byId;
+			List<Integer> sortedChunk = new ArrayList<>(chunk);
+			Collections.sort(sortedChunk);
+			List<Pilot> pilots = REMOTE.execute("Pilot?ID in " + sortedChunk, () -> new DefaultMeataService().getAllPilot()
+					.filter(filter)
+					.top(chunk.size())
+					.execute(new ErpConfigContext(DESTINATION)));
+			for (Pilot pilot : pilots) {
+				pilotsById.put(pilot.getID(), pilot);
+			}
+		}
+		return pilotsById;
+	}
+
+	/**
+	 * @return the plane, or null if the remote service does not have it
+	 */
+	public static Plane getPlane(Integer id) throws Exception {
+		return PLANES.get(id, key -> REMOTE.execute("Plane(" + key + ")", () -> {
+			MeataService service = new DefaultMeataService();
+			try {
+				return service.getPlaneByKey(key).execute(new ErpConfigContext(DESTINATION));
+			} catch (ODataException e) {
+				if (service.getAllPlane().select(Plane.ID).filter(Plane.ID.eq(key)).top(1)
+						.execute(new ErpConfigContext(DESTINATION)).isEmpty()) {
+					return null;
+				}
+				throw e;
+			}
+		}));
+	}
+
+	/**
+	 * Runs a translated query against the remote pilots; the shared remote result is not modified.
+	 */
+	public static QueryTranslator.Result<Pilot> queryPilots(QueryTranslator.Plan<Pilot, PilotSelectable> plan) throws Exception {
+		List<Pilot> pilots = REMOTE.execute(plan.getRemoteQuery(),
+				() -> plan.applyTo(new DefaultMeataService().getAllPilot()).execute(new ErpConfigContext(DESTINATION)));
+		return plan.countsRemotely() ? plan.complete(pilots, count(plan)) : plan.complete(pilots);
+	}
+
+	/**
+	 * Runs a translated query against the remote planes; the shared remote result is not modified.
+	 */
+	public static QueryTranslator.Result<Plane> queryPlanes(QueryTranslator.Plan<Plane, PlaneSelectable> plan) throws Exception {
+		List<Plane> planes = REMOTE.execute(plan.getRemoteQuery(),
+				() -> plan.applyTo(new DefaultMeataService().getAllPlane()).execute(new ErpConfigContext(DESTINATION)));
+		return plan.countsRemotely() ? plan.complete(planes, count(plan)) : plan.complete(planes);
+	}
+
+	/**
+	 * Counts the remote rows matching the plan's remote filter without downloading them.
+	 */
+	private static int count(QueryTranslator.Plan<?, ?> plan) throws Exception {
+		return REMOTE.execute(plan.getRemoteCountQuery(),
+				() -> plan.applyCountTo(ODataQueryBuilder.withEntity(MeataService.DEFAULT_SERVICE_PATH, plan.getEntitySet()).withoutMetadata())
+						.build()
+						.execute(new ErpConfigContext(DESTINATION))
+						.getInlineCount()
+						.intValue());
+	}
+}
@@ -0,0 +1,156 @@
+package my.company;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-ID cache in front of the key-based reads of the remote airport service.
+ * Entities that the remote side does not have are remembered as well, for a shorter time,
+ * so repeated reads of a missing ID do not go remote again.
+ */
+public class RemoteEntityCache<T> {
+
+	private static final long MAX_SIZE = Long.getLong("airport.cache.maxSize", 1000L);
+	private static final long TTL_SECONDS = Long.getLong("airport.cache.ttlSeconds", 60L);
+	private static final long MISSING_TTL_SECONDS = Long.getLong("airport.cache.missingTtlSeconds", 10L);
+
+	@FunctionalInterface
+	public interface Loader<T> {
+		/**
+		 * @return the entity, or null if the remote service does not have it
+		 */
+		T load(Integer id) throws Exception;
+	}
+
+	@FunctionalInterface
+	public interface BulkLoader<T> {
+		/**
+		 * @return the entities the remote service has, by ID; IDs left out are missing
+		 */
+		Map<Integer, T> loadAll(Set<Integer> ids) throws Exception;
+	}
+
+	private final String name;
+	private final Cache<Integer, T> found;
+	private final Cache<Integer, Boolean> missing;
+
+	public RemoteEntityCache(String name) {
+		this(name, MAX_SIZE, TTL_SECONDS, MISSING_TTL_SECONDS);
+	}
+
+	public RemoteEntityCache(String name, long maxSize, long ttlSeconds, long missingTtlSeconds) {
+		this.name = name;
+		this.found = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+		this.missing = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(missingTtlSeconds, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+	}
+
+	public T get(Integer id, Loader<T> loader) throws Exception {
+		T entity = found.getIfPresent(id);
+		if (entity != null) {
+			return entity;
+		}
+		if (missing.getIfPresent(id) != null) {
+			return null;
+		}
+
+		entity = loader.load(id);
+		if (entity == null) {
+			missing.put(id, Boolean.TRUE);
+		} else {
+			found.put(id, entity);
+		}
+		return entity;
+	}
+
+	/**
+	 * Looks up several IDs at once. The IDs that are neither cached nor known to be missing are loaded with
+	 * a single call of the bulk loader.
+	 *
+	 * @return the entities found, by ID
+	 */
+	public Map<Integer, T> getAll(Collection<Integer> ids, BulkLoader<T> loader) throws Exception {
+		Map<Integer, T> result = new HashMap<>();
+		Set<Integer> toLoad = new LinkedHashSet<>();
+		for (Integer id : ids) {
+			if (id == null || result.containsKey(id) || toLoad.contains(id)) {
+				continue;
+			}
+			T entity = found.getIfPresent(id);
+			if (entity != null) {
+				result.put(id, entity);
+			} else if (missing.getIfPresent(id) == null) {
+				toLoad.add(id);
+			}
+		}
+		if (toLoad.isEmpty()) {
+			return result;
+		}
+
+		Map<Integer, T> loaded = loader.loadAll(toLoad);
+		for (Integer id : toLoad) {
+			T entity = loaded.get(id);
+			if (entity == null) {
+				missing.put(id, Boolean.TRUE);
+			} else {
+				found.put(id, entity);
+				result.put(id, entity);
+			}
+		}
+		return result;
+	}
+
+	public void put(Integer id, T entity) {
+		missing.invalidate(id);
+		found.put(id, entity);
+	}
+
+	public void invalidateAll() {
+		found.invalidateAll();
+		missing.invalidateAll();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long size() {
+		return found.size();
+	}
+
+	/**
+	 * Lookups of cached entities. A miss here is only a remote read if the ID is not known to be missing either.
+	 */
+	public CacheStats getFoundStats() {
+		return found.stats();
+	}
+
+	/**
+	 * Lookups of IDs the remote service did not have; hits are remote reads saved for missing IDs.
+	 */
+	public CacheStats getMissingStats() {
+		return missing.stats();
+	}
+
+	/**
+	 * IDs that were looked up remotely, singly or as part of a bulk load.
+	 */
+	public long getRemoteReads() {
+		return missing.stats().missCount();
+	}
+}
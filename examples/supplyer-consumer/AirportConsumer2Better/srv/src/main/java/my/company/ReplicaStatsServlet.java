@@ -0,0 +1,35 @@
+package my.company;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Row counts and replication lag of the local replicas of the remote airport service.
+ */
+@WebServlet("/replica/stats")
+public class ReplicaStatsServlet extends HttpServlet {
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+		resp.setContentType("text/plain");
+		resp.setCharacterEncoding("UTF-8");
+		PrintWriter writer = resp.getWriter();
+		List<EntityReplica<?, ?>> replicas = Arrays.asList(MeataReplicator.PILOTS, MeataReplicator.PLANES, MeataReplicator.PLANE_TEXTS);
+		for (EntityReplica<?, ?> replica : replicas) {
+			writer.println(replica.getName()
+					+ " rows=" + replica.size()
+					+ " lagMillis=" + replica.getLagMillis()
+					+ " fresh=" + replica.isFresh(MeataReplicator.MAX_STALENESS_MILLIS)
+					+ " watermark=" + replica.getWatermark()
+					+ " syncs=" + replica.getSyncs()
+					+ " rowsApplied=" + replica.getRowsApplied()
+					+ " failures=" + replica.getFailures());
+		}
+	}
+}
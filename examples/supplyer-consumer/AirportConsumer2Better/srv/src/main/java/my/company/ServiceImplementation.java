@@ -1,12 +1,10 @@
 package my.company;
 
 import com.sap.cloud.sdk.cloudplatform.logging.CloudLoggerFactory;
-import com.sap.cloud.sdk.odatav2.connectivity.ODataQueryBuilder;
-import com.sap.cloud.sdk.s4hana.connectivity.ErpConfigContext;
 import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Pilot;
 import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.Plane;
-import com.sap.cloud.sdk.s4hana.datamodel.odata.services.DefaultMeataService;
-import com.sap.cloud.sdk.s4hana.datamodel.odata.services.MeataService;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.selectable.PilotSelectable;
+import com.sap.cloud.sdk.s4hana.datamodel.odata.namespaces.meata.selectable.PlaneSelectable;
 import com.sap.cloud.sdk.service.prov.api.EntityData;
 import com.sap.cloud.sdk.service.prov.api.ExtensionHelper;
 import com.sap.cloud.sdk.service.prov.api.annotations.AfterQuery;
@@ -15,6 +13,7 @@ import com.sap.cloud.sdk.service.prov.api.operations.Query;
 import com.sap.cloud.sdk.service.prov.api.operations.Read;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
 import com.sap.cloud.sdk.service.prov.api.request.ReadRequest;
+import com.sap.cloud.sdk.service.prov.api.response.ErrorResponse;
 import com.sap.cloud.sdk.service.prov.api.response.QueryResponse;
 import com.sap.cloud.sdk.service.prov.api.response.QueryResponseAccessor;
 import com.sap.cloud.sdk.service.prov.api.response.ReadResponse;
@@ -22,6 +21,7 @@ import com.sap.cloud.sdk.service.prov.api.response.ReadResponseAccessor;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ServiceImplementation {
@@ -32,48 +32,68 @@ public class ServiceImplementation {
 
 	@Query(serviceName="CatalogService2", entity="Pilots")
 	public QueryResponse getPilots(QueryRequest request) throws Exception {
-
-		MeataService service = new DefaultMeataService();
-		List<Pilot> pilots = service.getAllPilot().execute(new ErpConfigContext("airport-destination"));
-		return QueryResponse.setSuccess().setData(pilots).response();
+		QueryTranslator.Plan<Pilot, PilotSelectable> plan;
+		try {
+			plan = RemoteCatalog.PILOT_QUERIES.translate(request);
+		} catch (QueryTranslator.UnsupportedQueryException e) {
+			return badRequest(e);
+		}
+		return respond(request, queryPilots(plan));
 	}
 
 
 	@Read(serviceName="CatalogService2", entity="Pilots")
 	public ReadResponse getPilot(ReadRequest request) throws Exception {
 		Integer id = (Integer) request.getKeys().get("ID");
-		MeataService service = new DefaultMeataService();
-
-		List<Pilot> pilots = service.getAllPilot().execute(new ErpConfigContext("airport-destination"));
-		Pilot resPilot = null;
-		for (Pilot pilot : pilots) {
-			if ( pilot.getID().equals(id)) {
-				resPilot = pilot;
-			}
-		}
+		Pilot resPilot = MeataReplicator.PILOTS.isFresh(MeataReplicator.MAX_STALENESS_MILLIS)
+				? MeataReplicator.PILOTS.get(id)
+				: RemoteCatalog.getPilot(id);
 
 		return ReadResponse.setSuccess().setData(resPilot).response();
 	}
 
 
+	/**
+	 * Runs a pilot query on the local replica while it is within its staleness bound, else remotely.
+	 */
+	private static QueryTranslator.Result<Pilot> queryPilots(QueryTranslator.Plan<Pilot, PilotSelectable> plan) throws Exception {
+		if (MeataReplicator.PILOTS.isFresh(MeataReplicator.MAX_STALENESS_MILLIS)) {
+			return plan.evaluate(MeataReplicator.PILOTS.getAll());
+		}
+		return RemoteCatalog.queryPilots(plan);
+	}
+
+
+	private static QueryResponse respond(QueryRequest request, QueryTranslator.Result<?> result) {
+		return request.isInlineCountRequested()
+				? QueryResponse.setSuccess().setData(result.getRows()).setInlineCount(result.getCount()).response()
+				: QueryResponse.setSuccess().setData(result.getRows()).response();
+	}
+
+	private static QueryResponse badRequest(QueryTranslator.UnsupportedQueryException e) {
+		return QueryResponse.setError(ErrorResponse.getBuilder().setMessage(e.getMessage()).setStatusCode(400).response());
+	}
+
+
 	@Query(serviceName="CatalogService2", entity="Planes")
 	public QueryResponse getPlanes(QueryRequest request) throws Exception {
-		MeataService service = new DefaultMeataService();
-		List<Plane> planes = service.getAllPlane().execute(new ErpConfigContext("airport-destination"));
-		return QueryResponse.setSuccess().setData(planes).response();
+		QueryTranslator.Plan<Plane, PlaneSelectable> plan;
+		try {
+			plan = RemoteCatalog.PLANE_QUERIES.translate(request);
+		} catch (QueryTranslator.UnsupportedQueryException e) {
+			return badRequest(e);
+		}
+		return respond(request, MeataReplicator.PLANES.isFresh(MeataReplicator.MAX_STALENESS_MILLIS)
+				? plan.evaluate(MeataReplicator.PLANES.getAll())
+				: RemoteCatalog.queryPlanes(plan));
 	}
 
 	@Read(serviceName="CatalogService2", entity="Planes")
 	public ReadResponse getPlane(ReadRequest request) throws Exception {
 		Integer id = (Integer) request.getKeys().get("ID");
-		MeataService service = new DefaultMeataService();
-		List<Plane> planes = service.getAllPlane().execute(new ErpConfigContext("airport-destination"));
-		Plane resPlane = null;
-		for (Plane plane : planes) {
-			if (plane.getID().equals(id)) {
-				resPlane = plane;
-			}
-		}
+		Plane resPlane = MeataReplicator.PLANES.isFresh(MeataReplicator.MAX_STALENESS_MILLIS)
+				? MeataReplicator.PLANES.get(id)
+				: RemoteCatalog.getPlane(id);
 
 		return ReadResponse.setSuccess().setData(resPlane).response();
 	}
@@ -105,15 +125,15 @@ public class ServiceImplementation {
 
 	@Query(serviceName="CatalogService2", entity="EvenPilots")
 	public QueryResponse getEvenPilots(QueryRequest request) throws Exception {
-		MeataService service = new DefaultMeataService();
-		List<Pilot> pilots = service.getAllPilot().execute(new ErpConfigContext("airport-destination"));
-		List<Pilot> resultPilots = new ArrayList<>();
-		for (Pilot pilot : pilots) {
-			if (pilot.getID() % 2 == 0) {
-				resultPilots.add(pilot);
-			}
+		QueryTranslator.Plan<Pilot, PilotSelectable> plan;
+		try {
+			plan = RemoteCatalog.PILOT_QUERIES.translate(request);
+		} catch (QueryTranslator.UnsupportedQueryException e) {
+			return badRequest(e);
 		}
-		return QueryResponse.setSuccess().setData(resultPilots).response();
+		// the fluent API has no arithmetic, so "ID mod 2 eq 0" stays a local condition
+		plan.and(pilot -> pilot.getID() != null && pilot.getID() % 2 == 0, "ID");
+		return respond(request, queryPilots(plan));
 	}
 
 
@@ -123,20 +143,19 @@ public class ServiceImplementation {
 		//List<Pilot> pilots = service.getAllPilot().execute(new ErpConfigContext("airport-destination"));
 		//List<Pilot> resultPilots = new ArrayList<>();
 
-		List<Pilot> pilots =
-				new DefaultMeataService()
-						.getAllPilot()
-						.select(Pilot.ID,
-								Pilot.NAME
-								)
-						//.filter(Pilot.NAME.eq("Bob"))
-						.filter(Pilot.ID.gt(5))
-
-						.execute(new ErpConfigContext("airport-destination"));
+		QueryTranslator.Plan<Pilot, PilotSelectable> plan;
+		try {
+			plan = RemoteCatalog.PILOT_QUERIES.translate(request);
+		} catch (QueryTranslator.UnsupportedQueryException e) {
+			return badRequest(e);
+		}
+		plan.selectOnly("ID", "name")
+				//.and("name", "EQ", "Bob")
+				.and("ID", "GT", 5);
 
 
 
-		return QueryResponse.setSuccess().setData(pilots).response();
+		return respond(request, RemoteCatalog.queryPilots(plan));
 	}
 
 
@@ -154,13 +173,7 @@ public class ServiceImplementation {
 	public ReadResponse afterReadOrders(ReadRequest req, ReadResponseAccessor res, ExtensionHelper h) throws Exception{
 		EntityData ed = res.getEntityData();
 		//EntityData ex = EntityData.getBuilder(ed).addElement("amount", 1000).buildEntityData("Airport");
-		MeataService service = new DefaultMeataService();
-
-		Integer id = Integer.parseInt(ed.getMap().get("ID").toString());
-		Pilot pilot = service.getPilotByKey(id).execute(new ErpConfigContext("airport-destination"));
-		String name = pilot.getName();
-
-		ed.getMap().put("pilotName", name);
+		PilotNameEnrichment.enrich(Collections.singletonList(ed));
 		return ReadResponse.setSuccess().setData(ed).response();
 	}
 
@@ -168,7 +181,7 @@ public class ServiceImplementation {
 
 
 	@AfterQuery(entity = "Airports", serviceName = "AirPortService")
-	public QueryResponse afterQueryOrders(QueryRequest req, QueryResponseAccessor res, ExtensionHelper h) {
+	public QueryResponse afterQueryOrders(QueryRequest req, QueryResponseAccessor res, ExtensionHelper h) throws Exception {
 		List<EntityData> dataList = res.getEntityDataList(); // original list
 		List<EntityData> modifiedList = new ArrayList<EntityData>(dataList.size()); // modified list
 
@@ -178,6 +191,7 @@ public class ServiceImplementation {
 			//EntityData ex = EntityData.getBuilder(ed).addElement("amount", 1000).buildEntityData("Airports");
 			//dataList.add(ex);
 		}
+		PilotNameEnrichment.enrich(dataList);
 
 		return QueryResponse.setSuccess().setData(dataList).response();
 	}
@@ -187,7 +201,7 @@ public class ServiceImplementation {
 
 
 /*	@AfterQuery(entity = "Orders", serviceName = "CatalogService")
-	public QueryResponse afterQueryOrders(QueryRequest req, QueryResponseAccessor res, ExtensionHelper h) {
+	public QueryResponse afterQueryOrders(QueryRequest req, QueryResponseAccessor res, ExtensionHelper h) throws Exception {
 		List<EntityData> dataList = res.getEntityDataList(); // original list
 		List<EntityData> modifiedList = new ArrayList<EntityData>(dataList.size()); // modified list
 		for (EntityData ed : dataList) {
@@ -0,0 +1,83 @@
+package my.company;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets concurrent callers of the same remote query share one in-flight call.
+ * The first caller for a key runs the query; callers arriving before it finishes wait for its result
+ * or its exception. Nothing is kept once the call is done, so later callers query again.
+ */
+public class SingleFlight {
+
+	@FunctionalInterface
+	public interface Call<V> {
+		V call() throws Exception;
+	}
+
+	private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder executions = new LongAdder();
+
+	/**
+	 * @param key the normalised query; callers with equal keys must expect the same result
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V execute(String key, Call<V> call) throws Exception {
+		requests.increment();
+		CompletableFuture<Object> own = new CompletableFuture<>();
+		CompletableFuture<Object> running = inFlight.putIfAbsent(key, own);
+		if (running != null) {
+			return (V) await(running);
+		}
+
+		executions.increment();
+		try {
+			V result = call.call();
+			own.complete(result);
+			return result;
+		} catch (Throwable e) {
+			own.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+
+	private static Object await(CompletableFuture<Object> running) throws Exception {
+		try {
+			return running.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Remote calls actually made.
+	 */
+	public long getExecutions() {
+		return executions.sum();
+	}
+
+	/**
+	 * Requests served by another caller's in-flight call.
+	 */
+	public long getCoalesced() {
+		return getRequests() - getExecutions();
+	}
+
+	public double getCoalescingRatio() {
+		long requestCount = getRequests();
+		return requestCount == 0 ? 0 : (double) getCoalesced() / requestCount;
+	}
+}
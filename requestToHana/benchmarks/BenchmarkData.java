@@ -0,0 +1,240 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
+import com.sap.cloud.sdk.service.prov.api.EntityData;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Synthetic draft trees for the benchmarks. A tree is one header with {@code itemsPerTree} items spread over
+ * boxes of {@value #ITEMS_PER_BOX} items, and {@value #SIZES_PER_ITEM} sizes per item. The data is seeded, so
+ * every fork and every commit benchmarks the same rows.
+ */
+final class BenchmarkData {
+
+    static final int ITEMS_PER_BOX = 10;
+    static final int SIZES_PER_ITEM = 4;
+
+    private static final String[] COUNTRIES = {"United Kingdom", "Italy", "China", "Portugal", "Romania"};
+    private static final String[] TRANSPORTS = {"Air", "Sea", "Road"};
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2020, 3, 1, 10, 0);
+
+    private final Random random = new Random(42);
+    private final List<IBNHeaderDraft> headers = new ArrayList<>();
+    private final List<IBNBoxDraft> boxes = new ArrayList<>();
+    private final List<IBNItemDraft> items = new ArrayList<>();
+    private final List<IBNItemSizeDraft> sizes = new ArrayList<>();
+
+    private BenchmarkData() {
+    }
+
+    static BenchmarkData trees(int treeCount, int itemsPerTree) {
+        BenchmarkData data = new BenchmarkData();
+        for (int i = 0; i < treeCount; i++) {
+            data.addTree(i, itemsPerTree);
+        }
+        return data;
+    }
+
+    List<IBNHeaderDraft> getHeaders() {
+        return headers;
+    }
+
+    List<IBNBoxDraft> getBoxes() {
+        return boxes;
+    }
+
+    List<IBNItemDraft> getItems() {
+        return items;
+    }
+
+    List<IBNItemSizeDraft> getSizes() {
+        return sizes;
+    }
+
+    /**
+     * The rows as CDS hands them to the providers: keys as strings, dates as timestamps.
+     */
+    static <T> List<EntityData> toEntityData(DraftTable<T> table, List<T> entities) {
+        List<String> keys = Collections.singletonList(table.getKeyColumn());
+        return entities.stream()
+                .map(entity -> EntityData.createFromMap(toRow(table, entity), keys, table.getEntityName()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates the draft tables on an embedded database in the column layout the providers read.
+     */
+    static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createTable(IBNHeaderDraftProvider.TABLE));
+            statement.execute(createTable(IBNBoxDraftProvider.TABLE));
+            statement.execute(createTable(IBNItemDraftProvider.TABLE));
+            statement.execute(createTable(IBNItemSizeDraftProvider.TABLE));
+            statement.execute("CREATE INDEX BOX_IBNID ON " + IBNBoxDraftProvider.TABLE.getTableName() + " (IBNID)");
+            statement.execute("CREATE INDEX ITEM_IBNID ON " + IBNItemDraftProvider.TABLE.getTableName() + " (IBNID)");
+            statement.execute("CREATE INDEX SIZE_IBNID ON " + IBNItemSizeDraftProvider.TABLE.getTableName() + " (IBNID)");
+        }
+    }
+
+    void insertInto(Connection connection) throws SQLException {
+        BatchWriter batchWriter = new BatchWriter();
+        batchWriter.insertAll(connection, IBNHeaderDraftProvider.TABLE, headers);
+        batchWriter.insertAll(connection, IBNBoxDraftProvider.TABLE, boxes);
+        batchWriter.insertAll(connection, IBNItemDraftProvider.TABLE, items);
+        batchWriter.insertAll(connection, IBNItemSizeDraftProvider.TABLE, sizes);
+    }
+
+    /**
+     * A request without $filter and $orderby. QueryRequest is an interface of the service SDK, so a proxy is
+     * enough to stand in for the one the OData runtime builds.
+     */
+    static QueryRequest request(int top, int skip) {
+        return (QueryRequest) Proxy.newProxyInstance(QueryRequest.class.getClassLoader(), new Class<?>[]{QueryRequest.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTopOptionValue":
+                            return top;
+                        case "getSkipOptionValue":
+                            return skip;
+                        case "getOrderByProperties":
+                        case "getSelectProperties":
+                            return Collections.emptyList();
+                        case "isInlineCountRequested":
+                            return false;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private void addTree(int treeIndex, int itemsPerTree) {
+        IBNHeaderDraft header = fill(IBNHeaderDraftProvider.TABLE, new IBNHeaderDraft(), treeIndex);
+        header.setIBNNumber("IBN" + treeIndex);
+        List<IBNBoxDraft> treeBoxes = new ArrayList<>();
+        List<List<IBNItemDraft>> itemsByBox = new ArrayList<>();
+        List<IBNItemDraft> treeItems = new ArrayList<>();
+
+        IBNBoxDraft box = null;
+        for (int i = 0; i < itemsPerTree; i++) {
+            if (i % ITEMS_PER_BOX == 0) {
+                box = fill(IBNBoxDraftProvider.TABLE, new IBNBoxDraft(), i);
+                box.setIbnId(header.getIbnId());
+                box.setIBNNumber(header.getIBNNumber());
+                treeBoxes.add(box);
+                itemsByBox.add(new ArrayList<>());
+            }
+            IBNItemDraft item = fill(IBNItemDraftProvider.TABLE, new IBNItemDraft(), i);
+            item.setIbnId(header.getIbnId());
+            item.setIBNNumber(header.getIBNNumber());
+            item.setHanaBoxId(box.getHanaBoxId().toString());
+            item.setBoxId(box.getBoxId());
+
+            List<IBNItemSizeDraft> itemSizes = new ArrayList<>();
+            for (int s = 0; s < SIZES_PER_ITEM; s++) {
+                IBNItemSizeDraft size = fill(IBNItemSizeDraftProvider.TABLE, new IBNItemSizeDraft(), s);
+                size.setIbnId(header.getIbnId());
+                size.setIBNNumber(header.getIBNNumber());
+                size.setItemId(item.getItemId());
+                size.setHanaBoxId(item.getHanaBoxId());
+                size.setBoxID(item.getBoxId());
+                itemSizes.add(size);
+            }
+            item.setSizes(itemSizes);
+            itemsByBox.get(itemsByBox.size() - 1).add(item);
+            treeItems.add(item);
+            sizes.addAll(itemSizes);
+        }
+
+        for (int b = 0; b < treeBoxes.size(); b++) {
+            treeBoxes.get(b).setItems(itemsByBox.get(b));
+        }
+        header.setBoxes(treeBoxes);
+        header.setItems(treeItems);
+        headers.add(header);
+        boxes.addAll(treeBoxes);
+        items.addAll(treeItems);
+    }
+
+    /**
+     * Gives every column a value of its type, with names the dictionary knows for the country and transport columns.
+     */
+    private <T> T fill(DraftTable<T> table, T entity, int index) {
+        for (DraftTable.Column<T> column : table.getColumns()) {
+            column.assign(entity, valueFor(column, index));
+        }
+        return entity;
+    }
+
+    private Object valueFor(DraftTable.Column<?> column, int index) {
+        String name = column.getName();
+        switch (column.getType()) {
+            case UUID:
+                return new UUID(random.nextLong(), random.nextLong());
+            case DECIMAL:
+                return BigDecimal.valueOf(random.nextInt(1_000_000), 3);
+            case TIMESTAMP:
+                return BASE_DATE.plusHours(random.nextInt(24 * 365));
+            default:
+                if (name.contains("COUNTRY")) {
+                    return COUNTRIES[index % COUNTRIES.length];
+                }
+                if (name.equals("METHODOFTRANSPORTATION")) {
+                    return TRANSPORTS[index % TRANSPORTS.length];
+                }
+                return name + "-" + index;
+        }
+    }
+
+    private static <T> Map<String, Object> toRow(DraftTable<T> table, T entity) {
+        Map<String, Object> row = new HashMap<>();
+        for (DraftTable.Column<T> column : table.getColumns()) {
+            Object value = column.valueOf(entity);
+            if (value instanceof UUID) {
+                value = value.toString();
+            } else if (value instanceof LocalDateTime) {
+                value = Timestamp.valueOf((LocalDateTime) value);
+            }
+            row.put(column.getName(), value);
+        }
+        return row;
+    }
+
+    private static String createTable(DraftTable<?> table) {
+        String columns = table.getColumns().stream()
+                .map(column -> column.getName() + " " + sqlType(column.getType()))
+                .collect(Collectors.joining(", "));
+        return "CREATE TABLE " + table.getTableName() + " (" + columns + ", PRIMARY KEY (" + table.getKeyColumn() + "))";
+    }
+
+    private static String sqlType(ColumnType type) {
+        switch (type) {
+            case UUID:
+                return "NVARCHAR(36)";
+            case DECIMAL:
+                return "DECIMAL(15, 3)";
+            case TIMESTAMP:
+                return "TIMESTAMP";
+            default:
+                return "NVARCHAR(5000)";
+        }
+    }
+}
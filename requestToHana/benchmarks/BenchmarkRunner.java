@@ -0,0 +1,30 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so runs of two commits can be compared.
+ * <p>
+ * Usage: {@code java -jar target/hdi-benchmarks.jar [include-regex] [result-file]}. By default every benchmark of
+ * this package runs and the results go to {@code target/jmh-result.json}.
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+        String resultFile = args.length > 1 ? args[1] : DEFAULT_RESULT_FILE;
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+}
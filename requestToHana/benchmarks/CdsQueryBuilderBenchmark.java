@@ -0,0 +1,105 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Query construction in {@link CdsQueryBuilder}, plus the JDBC counterparts of {@link SqlQueryBuilder}. The tree
+ * size drives the length of the IN lists built over the item keys of a tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class CdsQueryBuilderBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10", "100", "1000"})
+    public int itemsPerTree;
+
+    private Map<String, Object> keys;
+    private Object[] itemIds;
+    private List<String> itemIdList;
+    private QueryRequest pageRequest;
+    private String continuationToken;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.trees(1, PAGE_SIZE + 1);
+        IBNHeaderDraft header = data.getHeaders().get(0);
+        keys = Collections.singletonMap("IBNID", header.getIbnId().toString());
+        pageRequest = BenchmarkData.request(PAGE_SIZE, 0);
+        continuationToken = CdsQueryBuilder.buildKeysetQuery(IBNItemDraftProvider.TABLE, pageRequest, null)
+                .toPage(data.getItems())
+                .getContinuationToken();
+
+        itemIdList = BenchmarkData.trees(1, itemsPerTree).getItems().stream()
+                .map(IBNItemDraft::getItemId)
+                .map(Object::toString)
+                .collect(Collectors.toList());
+        itemIds = itemIdList.toArray();
+    }
+
+    @Benchmark
+    public Object selectByKeys() {
+        return CdsQueryBuilder.buildSelectByKeysQuery(IBNHeaderDraftProvider.TABLE.getEntityName(), keys);
+    }
+
+    @Benchmark
+    public Object selectAll() {
+        return CdsQueryBuilder.buildSelectAllQuery(IBNItemDraftProvider.TABLE.getEntityName(), pageRequest);
+    }
+
+    @Benchmark
+    public Object selectByItemIds() {
+        ConditionBuilder.Condition condition = new ConditionBuilder().columnName("ITEMID").IN(itemIds);
+        return CdsQueryBuilder.buildSelectByConditionQuery(IBNItemSizeDraftProvider.TABLE.getEntityName(), condition);
+    }
+
+    @Benchmark
+    public Object inlineCount() {
+        return CdsQueryBuilder.buildInlineCountQuery(IBNItemDraftProvider.TABLE.getEntityName(), "ITEMID");
+    }
+
+    @Benchmark
+    public Object keysetFirstPage() {
+        return CdsQueryBuilder.buildKeysetQuery(IBNItemDraftProvider.TABLE, pageRequest, null);
+    }
+
+    @Benchmark
+    public Object keysetNextPage() {
+        return CdsQueryBuilder.buildKeysetQuery(IBNItemDraftProvider.TABLE, pageRequest, continuationToken);
+    }
+
+    @Benchmark
+    public Object sqlSelectByColumns() {
+        return SqlQueryBuilder.buildSelectByColumnsQuery(IBNItemDraftProvider.TABLE, keys);
+    }
+
+    @Benchmark
+    public Object sqlDeleteByItemIds() {
+        return SqlQueryBuilder.buildDeleteInQuery(IBNItemSizeDraftProvider.TABLE, "ITEMID", itemIdList);
+    }
+}
@@ -0,0 +1,101 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decimal decoding through double, as the providers did before the {@link DraftMapper}, against the exact
+ * {@link ColumnType#DECIMAL} decoding.
+ * <p>
+ * The setup checks correctness: it fails if an exact path changes a value, and logs how many values the
+ * double path changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class DecimalDecodingBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecimalDecodingBenchmark.class);
+
+    @Param({"1000", "100000"})
+    public int values;
+
+    private List<BigDecimal> decimals;
+    private List<Long> longs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimals = new ArrayList<>(values);
+        longs = new ArrayList<>(values);
+        for (int i = 0; i < values; i++) {
+            // DECIMAL(15, 3) as in the draft tables, so the largest values carry 15 significant digits
+            long unscaled = i % 10 == 0 ? 999_999_999_999_999L - random.nextInt(1000) : random.nextInt(10_000_000);
+            BigDecimal decimal = BigDecimal.valueOf(unscaled, 3);
+            decimals.add(decimal);
+            longs.add(unscaled);
+        }
+        verify();
+    }
+
+    @Benchmark
+    public void legacyDouble(Blackhole blackhole) {
+        for (BigDecimal decimal : decimals) {
+            blackhole.consume(legacyDecode(decimal));
+        }
+    }
+
+    @Benchmark
+    public void exactDecimal(Blackhole blackhole) {
+        for (BigDecimal decimal : decimals) {
+            blackhole.consume(ColumnType.DECIMAL.decode(decimal));
+        }
+    }
+
+    @Benchmark
+    public void exactLong(Blackhole blackhole) {
+        for (Long value : longs) {
+            blackhole.consume(ColumnType.DECIMAL.decode(value));
+        }
+    }
+
+    private void verify() {
+        int legacyChanged = 0;
+        for (int i = 0; i < values; i++) {
+            BigDecimal decimal = decimals.get(i);
+            if (!decimal.equals(ColumnType.DECIMAL.decode(decimal))
+                    || decimal.compareTo(((BigDecimal) ColumnType.DECIMAL.decode(longs.get(i))).movePointLeft(3)) != 0) {
+                throw new IllegalStateException("Exact decoding changed " + decimal);
+            }
+            if (!decimal.equals(legacyDecode(decimal))) {
+                legacyChanged++;
+            }
+        }
+        LOG.info("Decoding through double changed {} of {} values", legacyChanged, values);
+    }
+
+    private static BigDecimal legacyDecode(Object value) {
+        return BigDecimal.valueOf(Double.parseDouble(value.toString()));
+    }
+}
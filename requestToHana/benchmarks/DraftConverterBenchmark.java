@@ -0,0 +1,69 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shallow conversion of a header list and deep conversion of whole trees. The dictionary snapshot is warmed up in
+ * the setup, so lookups are served from memory as they are in a running service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class DraftConverterBenchmark {
+
+    private static final int TREES = 20;
+
+    @Param({"10", "100", "1000"})
+    public int itemsPerTree;
+
+    private BenchmarkData data;
+
+    @Setup
+    public void setUp() {
+        data = BenchmarkData.trees(TREES, itemsPerTree);
+        DraftConverter.convertAllIBNHeaderDrafts(data.getHeaders());
+        data.getItems().forEach(DraftConverter::convertFromIBNItemDraft);
+    }
+
+    @Benchmark
+    public Object shallowHeaders() {
+        return DraftConverter.convertAllIBNHeaderDrafts(data.getHeaders());
+    }
+
+    @Benchmark
+    public Object shallowItems() {
+        return DraftConverter.convertAllIBNItemDrafts(data.getItems());
+    }
+
+    @Benchmark
+    public void deepHeaders(Blackhole blackhole) {
+        for (IBNHeaderDraft header : data.getHeaders()) {
+            blackhole.consume(DraftConverter.deepConvertFromIBNHeaderDraft(header));
+        }
+    }
+
+    @Benchmark
+    public void deepBoxes(Blackhole blackhole) {
+        for (IBNBoxDraft box : data.getBoxes()) {
+            blackhole.consume(DraftConverter.deepConvertFromIBNBoxDraft(box));
+        }
+    }
+}
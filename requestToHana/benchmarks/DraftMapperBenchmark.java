@@ -0,0 +1,115 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.sap.cloud.sdk.service.prov.api.EntityData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link DraftMapper} with the map-based populate() it replaced, on item rows as CDS returns them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class DraftMapperBenchmark {
+
+    private static final String ENTITY_NAME = "pptl.odata.ibn.manage.db.InboundDeliveryItemDraft";
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    private List<EntityData> result;
+
+    @Setup
+    public void setUp() {
+        result = new ArrayList<>(rows);
+        UUID ibnId = UUID.randomUUID();
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("ITEMID", UUID.randomUUID().toString());
+            row.put("IBNID", ibnId.toString());
+            row.put("HANABOXID", UUID.randomUUID().toString());
+            row.put("IBNNUMBER", "IBN" + i);
+            row.put("BOXID", "BOX" + (i % 20));
+            row.put("MATERIALNUMBER", "MAT-" + i);
+            row.put("DESCRIPTION", "Trench coat");
+            row.put("COLOR", "Honey");
+            row.put("PRICE", new BigDecimal("1290.55"));
+            row.put("COUNTRYOFORIGIN", "GB");
+            row.put("COLLECTIONCOUNTRY", "IT");
+            row.put("METHODOFTRANSPORTATION", "AIR");
+            row.put("EXFACTORYDATE", Timestamp.valueOf(LocalDateTime.of(2020, 3, 1, 10, 0)));
+            row.put("DELIVERYDATE", Timestamp.valueOf(LocalDateTime.of(2020, 3, 15, 10, 0)));
+            row.put("CURRENCY", "GBP");
+            row.put("QUANTITY", new BigDecimal("12.000"));
+            result.add(EntityData.createFromMap(row, Collections.singletonList("ITEMID"), ENTITY_NAME));
+        }
+    }
+
+    @Benchmark
+    public void legacyPopulate(Blackhole blackhole) {
+        for (EntityData entityData : result) {
+            blackhole.consume(LegacyPopulate.populate(entityData.asMap()));
+        }
+    }
+
+    @Benchmark
+    public void draftMapper(Blackhole blackhole) {
+        for (EntityData entityData : result) {
+            blackhole.consume(IBNItemDraftProvider.MAPPER.fromEntityData(entityData));
+        }
+    }
+
+    /**
+     * Copy of IBNItemDraftProvider.populate as it was before the DraftMapper.
+     */
+    static class LegacyPopulate {
+
+        static IBNItemDraft populate(Map<String, Object> entityProperties) {
+            IBNItemDraft itemDraft = new IBNItemDraft();
+            itemDraft.setItemId(UUID.fromString(entityProperties.get("ITEMID").toString()));
+            itemDraft.setIbnId(UUID.fromString(entityProperties.get("IBNID").toString()));
+            itemDraft.setHanaBoxId(entityProperties.computeIfAbsent("HANABOXID", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setIBNNumber(entityProperties.computeIfAbsent("IBNNUMBER", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setBoxId(entityProperties.computeIfAbsent("BOXID", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setMaterialNumber(entityProperties.computeIfAbsent("MATERIALNUMBER", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setDescription(entityProperties.computeIfAbsent("DESCRIPTION", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setColor(entityProperties.computeIfAbsent("COLOR", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setPrice((BigDecimal) entityProperties.computeIfPresent("PRICE", (k, v) -> BigDecimal.valueOf(Double.parseDouble(v.toString()))));
+            itemDraft.setCountryOfOrigin(entityProperties.computeIfAbsent("COUNTRYOFORIGIN", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setCollectionCountry(entityProperties.computeIfAbsent("COLLECTIONCOUNTRY", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setMethodOfTransportation(entityProperties.computeIfAbsent("METHODOFTRANSPORTATION", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setExFactoryDate((LocalDateTime) entityProperties.computeIfPresent("EXFACTORYDATE", (k, v) -> ((Timestamp) v).toLocalDateTime()));
+            itemDraft.setDeliveryDate((LocalDateTime) entityProperties.computeIfPresent("DELIVERYDATE", (k, v) -> ((Timestamp) v).toLocalDateTime()));
+            itemDraft.setCurrency(entityProperties.computeIfAbsent("CURRENCY", key -> Constants.NO_VALUE_STRING).toString());
+            itemDraft.setPlanningQty((BigDecimal) entityProperties.computeIfPresent("QUANTITY", (k, v) -> BigDecimal.valueOf(Double.parseDouble(v.toString()))));
+
+            return itemDraft;
+        }
+    }
+}
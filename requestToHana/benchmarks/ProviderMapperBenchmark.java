@@ -0,0 +1,73 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.api.EntityData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping of each provider on the rows of one draft tree, as the CDS queries return them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class ProviderMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int itemsPerTree;
+
+    private List<EntityData> headerRows;
+    private List<EntityData> boxRows;
+    private List<EntityData> itemRows;
+    private List<EntityData> sizeRows;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = BenchmarkData.trees(1, itemsPerTree);
+        headerRows = BenchmarkData.toEntityData(IBNHeaderDraftProvider.TABLE, data.getHeaders());
+        boxRows = BenchmarkData.toEntityData(IBNBoxDraftProvider.TABLE, data.getBoxes());
+        itemRows = BenchmarkData.toEntityData(IBNItemDraftProvider.TABLE, data.getItems());
+        sizeRows = BenchmarkData.toEntityData(IBNItemSizeDraftProvider.TABLE, data.getSizes());
+    }
+
+    @Benchmark
+    public void header(Blackhole blackhole) {
+        map(headerRows, IBNHeaderDraftProvider.MAPPER, blackhole);
+    }
+
+    @Benchmark
+    public void boxes(Blackhole blackhole) {
+        map(boxRows, IBNBoxDraftProvider.MAPPER, blackhole);
+    }
+
+    @Benchmark
+    public void items(Blackhole blackhole) {
+        map(itemRows, IBNItemDraftProvider.MAPPER, blackhole);
+    }
+
+    @Benchmark
+    public void sizes(Blackhole blackhole) {
+        map(sizeRows, IBNItemSizeDraftProvider.MAPPER, blackhole);
+    }
+
+    private static void map(List<EntityData> rows, DraftMapper<?> mapper, Blackhole blackhole) {
+        for (EntityData row : rows) {
+            blackhole.consume(mapper.fromEntityData(row));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end provider reads through the connection pool against an in-memory H2 database registered for the
+ * draft namespace. Only the JDBC read paths run here: the CDS paths generate HANA SQL that H2 does not accept,
+ * their query construction is covered by {@link CdsQueryBuilderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class ProviderReadBenchmark {
+
+    private static final String ENTITY_NAMESPACE = "pptl.odata.ibn.manage.db";
+    private static final int TREES = 20;
+
+    @Param({"10", "100", "1000"})
+    public int itemsPerTree;
+
+    private final IBNHeaderDraftProvider headerProvider = new IBNHeaderDraftProvider();
+    private final IBNBoxDraftProvider boxProvider = new IBNBoxDraftProvider();
+    private final IBNItemDraftProvider itemProvider = new IBNItemDraftProvider();
+    private final IBNItemSizeDraftProvider sizeProvider = new IBNItemSizeDraftProvider();
+    private JdbcDataSource dataSource;
+    private QueryRequest allHeaders;
+    private Map<String, Object> treeKey;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:drafts-" + itemsPerTree + ";DB_CLOSE_DELAY=-1");
+
+        BenchmarkData data = BenchmarkData.trees(TREES, itemsPerTree);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            BenchmarkData.createSchema(connection);
+            data.insertInto(connection);
+            connection.commit();
+        }
+        DataSourceManager.getInstance().registerDataSource(ENTITY_NAMESPACE, dataSource);
+
+        allHeaders = BenchmarkData.request(0, 0);
+        treeKey = Collections.singletonMap("IBNID", data.getHeaders().get(TREES / 2).getIbnId());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        DataSourceManager.getInstance().shutdown();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Benchmark
+    public void streamHeaders(Blackhole blackhole) {
+        drain(headerProvider.stream(allHeaders), blackhole);
+    }
+
+    @Benchmark
+    public void streamItemsOfTree(Blackhole blackhole) {
+        drain(itemProvider.streamWhere(treeKey), blackhole);
+    }
+
+    /**
+     * Reads every level of one tree, one query per level.
+     */
+    @Benchmark
+    public void streamTree(Blackhole blackhole) {
+        drain(headerProvider.streamWhere(treeKey), blackhole);
+        drain(boxProvider.streamWhere(treeKey), blackhole);
+        drain(itemProvider.streamWhere(treeKey), blackhole);
+        drain(sizeProvider.streamWhere(treeKey), blackhole);
+    }
+
+    private static void drain(Stream<?> rows, Blackhole blackhole) {
+        try (Stream<?> stream = rows) {
+            stream.forEach(blackhole::consume);
+        }
+    }
+}
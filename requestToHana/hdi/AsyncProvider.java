@@ -0,0 +1,33 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.filter.Expression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link Provider}. The cursor based stream reads are left out on purpose: a stream
+ * holds its connection until it is consumed and gains nothing from being handed over to another thread.
+ */
+public interface AsyncProvider<T> {
+
+    CompletableFuture<T> save(T header);
+    CompletableFuture<Void> deleteByKey(String key);
+    CompletableFuture<Void> update(T header);
+    CompletableFuture<Optional<T>> getByKey(String key);
+    CompletableFuture<Optional<T>> getByKeyFetched(String key);
+    CompletableFuture<Integer> getInlineCount();
+    CompletableFuture<Integer> getInlineCountFiltered(Expression filterExpression);
+    CompletableFuture<List<T>> getAll(QueryRequest req);
+    CompletableFuture<List<T>> getAllFiltered(QueryRequest req);
+    CompletableFuture<KeysetPage<T>> getPage(QueryRequest req, String continuationToken);
+    CompletableFuture<PageResult<T>> getAllWithCount(QueryRequest req);
+    CompletableFuture<List<T>> getAllFetchedByKey(String key);
+    CompletableFuture<List<T>> query(ConditionBuilder.Condition condition);
+    CompletableFuture<BatchResult> saveAll(List<T> entities);
+    CompletableFuture<BatchResult> updateAll(List<T> entities);
+    CompletableFuture<BatchResult> deleteAll(List<String> keys);
+}
@@ -0,0 +1,108 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.filter.Expression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the calls of a blocking {@link Provider} on the shared I/O executor.
+ */
+public class AsyncProviderAdapter<T> implements AsyncProvider<T> {
+
+    private final Provider<T> delegate;
+    private final Executor executor;
+
+    public AsyncProviderAdapter(Provider<T> delegate) {
+        this(delegate, HdiExecutors.ioExecutor());
+    }
+
+    public AsyncProviderAdapter(Provider<T> delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<T> save(T header) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.save(header), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteByKey(String key) {
+        return InstrumentedExecutor.runAsync(() -> delegate.deleteByKey(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> update(T header) {
+        return InstrumentedExecutor.runAsync(() -> delegate.update(header), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> getByKey(String key) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getByKey(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> getByKeyFetched(String key) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getByKeyFetched(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> getInlineCount() {
+        return InstrumentedExecutor.supplyAsync(delegate::getInlineCount, executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> getInlineCountFiltered(Expression filterExpression) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getInlineCountFiltered(filterExpression), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(QueryRequest req) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getAll(req), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAllFiltered(QueryRequest req) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getAllFiltered(req), executor);
+    }
+
+    @Override
+    public CompletableFuture<KeysetPage<T>> getPage(QueryRequest req, String continuationToken) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getPage(req, continuationToken), executor);
+    }
+
+    @Override
+    public CompletableFuture<PageResult<T>> getAllWithCount(QueryRequest req) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getAllWithCount(req), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAllFetchedByKey(String key) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.getAllFetchedByKey(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> query(ConditionBuilder.Condition condition) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.query(condition), executor);
+    }
+
+    @Override
+    public CompletableFuture<BatchResult> saveAll(List<T> entities) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.saveAll(entities), executor);
+    }
+
+    @Override
+    public CompletableFuture<BatchResult> updateAll(List<T> entities) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.updateAll(entities), executor);
+    }
+
+    @Override
+    public CompletableFuture<BatchResult> deleteAll(List<String> keys) {
+        return InstrumentedExecutor.supplyAsync(() -> delegate.deleteAll(keys), executor);
+    }
+}
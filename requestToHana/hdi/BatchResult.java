@@ -0,0 +1,99 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-row outcome of a batched write. Rows are reported in the order they were passed in.
+ */
+public class BatchResult {
+
+    public enum RowStatus {
+        WRITTEN,
+        FAILED,
+        NOT_EXECUTED,
+        ROLLED_BACK
+    }
+
+    private final RowStatus[] statuses;
+    private final int[] affectedRows;
+    private boolean committed;
+    private SQLException error;
+
+    BatchResult(int size) {
+        this.statuses = new RowStatus[size];
+        this.affectedRows = new int[size];
+        Arrays.fill(statuses, RowStatus.NOT_EXECUTED);
+    }
+
+    void recordChunk(int offset, int[] updateCounts) {
+        for (int i = 0; i < updateCounts.length && offset + i < statuses.length; i++) {
+            boolean failed = updateCounts[i] == Statement.EXECUTE_FAILED;
+            statuses[offset + i] = failed ? RowStatus.FAILED : RowStatus.WRITTEN;
+            affectedRows[offset + i] = Math.max(updateCounts[i], 0);
+        }
+    }
+
+    void recordFailure(int offset, int chunkLength, int[] updateCounts, SQLException error) {
+        recordChunk(offset, updateCounts);
+        if (updateCounts.length < chunkLength) {
+            // the driver stopped at the first failing row of the chunk
+            statuses[offset + updateCounts.length] = RowStatus.FAILED;
+        }
+        this.error = error;
+    }
+
+    void markCommitted() {
+        this.committed = true;
+    }
+
+    void markRolledBack() {
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == RowStatus.WRITTEN) {
+                statuses[i] = RowStatus.ROLLED_BACK;
+                affectedRows[i] = 0;
+            }
+        }
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public boolean hasFailures() {
+        return error != null;
+    }
+
+    public SQLException getError() {
+        return error;
+    }
+
+    public int size() {
+        return statuses.length;
+    }
+
+    public RowStatus getStatus(int row) {
+        return statuses[row];
+    }
+
+    public int getAffectedRows(int row) {
+        return affectedRows[row];
+    }
+
+    public int getTotalAffectedRows() {
+        return Arrays.stream(affectedRows).sum();
+    }
+
+    public List<Integer> getFailedRows() {
+        List<Integer> failedRows = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == RowStatus.FAILED) {
+                failedRows.add(i);
+            }
+        }
+        return failedRows;
+    }
+}
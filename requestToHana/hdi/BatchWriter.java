@@ -0,0 +1,174 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes draft rows with JDBC statement batching. Each public call runs in a single transaction on a pooled
+ * connection: if any row fails the whole call is rolled back and the per-row outcome is reported in the
+ * {@link BatchResult}. Once such a call is committed, the IBNs of the written rows are published to the
+ * {@link DraftCacheInvalidator}; calls on a caller's connection leave that to the caller.
+ */
+public class BatchWriter {
+
+    private static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("hdi.batch.chunkSize", 500);
+    private static final String BATCH_EXCEPTION_MESSAGE = "Error executing JDBC batch";
+
+    private final int chunkSize;
+
+    public BatchWriter() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public BatchWriter(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    @FunctionalInterface
+    private interface BatchWork {
+        BatchResult execute(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowBinder<R> {
+        void bind(PreparedStatement statement, R row) throws SQLException;
+    }
+
+    public <T> BatchResult insertAll(String namespace, DraftTable<T> table, List<T> rows) {
+        BatchResult result = inTransaction(namespace, rows.size(), connection -> insertAll(connection, table, rows));
+        if (result.isCommitted()) {
+            DraftCacheInvalidator.getInstance().invalidateRows(table, rows);
+        }
+        return result;
+    }
+
+    public <T> BatchResult updateAll(String namespace, DraftTable<T> table, List<T> rows) {
+        BatchResult result = inTransaction(namespace, rows.size(), connection -> updateAll(connection, table, rows));
+        if (result.isCommitted()) {
+            DraftCacheInvalidator.getInstance().invalidateRows(table, rows);
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the rows whose {@code column} has one of the keys. The caches are only invalidated for deletes by
+     * IBNID, which is the only column the providers delete by.
+     */
+    public BatchResult deleteAll(String namespace, DraftTable<?> table, String column, List<String> keys) {
+        BatchResult result = inTransaction(namespace, keys.size(), connection -> deleteAll(connection, table, column, keys));
+        if (result.isCommitted() && DraftCacheInvalidator.IBN_KEY_NAME.equalsIgnoreCase(column)) {
+            keys.forEach(DraftCacheInvalidator.getInstance()::invalidate);
+        }
+        return result;
+    }
+
+    /**
+     * Batches the inserts on a connection whose transaction is managed by the caller.
+     */
+    public <T> BatchResult insertAll(Connection connection, DraftTable<T> table, List<T> rows) throws SQLException {
+        List<DraftTable.Column<T>> columns = table.getColumns();
+        String sql = "INSERT INTO " + table.getTableName()
+                + " (" + columns.stream().map(DraftTable.Column::getName).collect(Collectors.joining(", ")) + ")"
+                + " VALUES (" + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+
+        return executeBatch(connection, sql, rows, (statement, row) -> {
+            int index = 1;
+            for (DraftTable.Column<T> column : columns) {
+                column.getType().bind(statement, index++, column.valueOf(row));
+            }
+        });
+    }
+
+    public <T> BatchResult updateAll(Connection connection, DraftTable<T> table, List<T> rows) throws SQLException {
+        List<DraftTable.Column<T>> columns = table.getColumns()
+                .stream()
+                .filter(column -> !column.getName().equals(table.getKeyColumn()))
+                .collect(Collectors.toList());
+        DraftTable.Column<T> keyColumn = table.getColumn(table.getKeyColumn());
+        String sql = "UPDATE " + table.getTableName()
+                + " SET " + columns.stream().map(column -> column.getName() + " = ?").collect(Collectors.joining(", "))
+                + " WHERE " + keyColumn.getName() + " = ?";
+
+        return executeBatch(connection, sql, rows, (statement, row) -> {
+            int index = 1;
+            for (DraftTable.Column<T> column : columns) {
+                column.getType().bind(statement, index++, column.valueOf(row));
+            }
+            keyColumn.getType().bind(statement, index, keyColumn.valueOf(row));
+        });
+    }
+
+    public BatchResult deleteAll(Connection connection, DraftTable<?> table, String column, List<String> keys) throws SQLException {
+        String sql = "DELETE FROM " + table.getTableName() + " WHERE " + column + " = ?";
+
+        return executeBatch(connection, sql, keys, (statement, key) -> statement.setString(1, key));
+    }
+
+    private <R> BatchResult executeBatch(Connection connection, String sql, List<R> rows, RowBinder<R> binder) throws SQLException {
+        BatchResult result = new BatchResult(rows.size());
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int offset = 0; offset < rows.size(); offset += chunkSize) {
+                int end = Math.min(offset + chunkSize, rows.size());
+                for (int i = offset; i < end; i++) {
+                    binder.bind(statement, rows.get(i));
+                    statement.addBatch();
+                }
+
+                try {
+                    result.recordChunk(offset, statement.executeBatch());
+                } catch (BatchUpdateException e) {
+                    int[] updateCounts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+                    result.recordFailure(offset, end - offset, updateCounts, e);
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private BatchResult inTransaction(String namespace, int size, BatchWork work) {
+        if (size == 0) {
+            BatchResult empty = new BatchResult(0);
+            empty.markCommitted();
+            return empty;
+        }
+
+        try (HdiSession session = DataSourceManager.getInstance().openSession(namespace)) {
+            Connection connection = session.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                BatchResult result = work.execute(connection);
+                if (result.hasFailures()) {
+                    connection.rollback();
+                    result.markRolledBack();
+                } else {
+                    connection.commit();
+                    result.markCommitted();
+                }
+                return result;
+
+            } catch (SQLException e) {
+                rollbackQuietly(connection);
+                throw new DraftProviderException(BATCH_EXCEPTION_MESSAGE, e);
+            }
+        }
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // the pool resets or discards the connection when it is returned
+        }
+    }
+}
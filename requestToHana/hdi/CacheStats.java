@@ -0,0 +1,52 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+public class CacheStats {
+
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+
+    CacheStats(int size, long hits, long misses, long evictions, long invalidations) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Entries dropped because the cache was full or their time to live had passed.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{size=" + size + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", invalidations=" + invalidations + "}";
+    }
+}
@@ -0,0 +1,290 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.filter.Expression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache around a provider for {@code getByKey} and {@code getByKeyFetched}. Entries are bounded by
+ * size (least recently used first) and by time to live. Every committed write of the draft providers, including
+ * the ones a header or box provider makes through its own child providers, evicts the entries of the affected IBN
+ * in all caching providers via the {@link DraftCacheInvalidator}. A load that overlaps the invalidation of its own
+ * IBN is returned but not cached; loads of other IBNs are not affected.
+ * <p>
+ * Cached drafts are shared between callers and must not be modified in place without writing them back.
+ * Writes that bypass the draft providers, for example plain CDS updates, are only picked up once the entries
+ * expire.
+ */
+public class CachingProvider<T> implements Provider<T> {
+
+    private static final int DEFAULT_MAX_SIZE = Integer.getInteger("hdi.cache.maxSize", 1000);
+    private static final long DEFAULT_TTL_MILLIS = Long.getLong("hdi.cache.ttlMillis", 60000L);
+    private static final String BY_KEY = "byKey:";
+    private static final String FETCHED = "fetched:";
+
+    private final Provider<T> delegate;
+    private final Function<T, UUID> ibnIdOf;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, CacheEntry<T>> entries;
+    private final Map<String, Set<String>> keysByIbnId = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    // the invalidator holds the listener weakly, so it lives exactly as long as this cache
+    private final Consumer<String> invalidationListener = this::evictIbn;
+    private long invalidationSequence;
+    private long clearedAt;
+    // sequence of each IBN's last invalidation, kept while a load that started before it is still running
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+    private final TreeMap<Long, Integer> loadsInFlight = new TreeMap<>();
+
+    public CachingProvider(Provider<T> delegate, Function<T, UUID> ibnIdOf) {
+        this(delegate, ibnIdOf, DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    public CachingProvider(Provider<T> delegate, Function<T, UUID> ibnIdOf, int maxSize, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive");
+        }
+        this.delegate = delegate;
+        this.ibnIdOf = ibnIdOf;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<String, CacheEntry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
+                if (size() <= CachingProvider.this.maxSize) {
+                    return false;
+                }
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+        DraftCacheInvalidator.getInstance().addListener(invalidationListener);
+    }
+
+    /**
+     * Stops listening for invalidations and empties the cache. A cache that is merely dropped stops listening once
+     * it is garbage collected.
+     */
+    public void detach() {
+        DraftCacheInvalidator.getInstance().removeListener(invalidationListener);
+        clear();
+    }
+
+    public CacheStats getStats() {
+        synchronized (entries) {
+            return new CacheStats(entries.size(), hits.get(), misses.get(), evictions.get(), invalidations.get());
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            clearedAt = ++invalidationSequence;
+            entries.clear();
+            keysByIbnId.clear();
+        }
+    }
+
+    @Override
+    public Optional<T> getByKey(String key) {
+        return cached(BY_KEY + key, () -> delegate.getByKey(key));
+    }
+
+    @Override
+    public Optional<T> getByKeyFetched(String key) {
+        return cached(FETCHED + key, () -> delegate.getByKeyFetched(key));
+    }
+
+    // the delegate publishes the invalidation of its writes itself
+
+    @Override
+    public T save(T header) {
+        return delegate.save(header);
+    }
+
+    @Override
+    public void update(T header) {
+        delegate.update(header);
+    }
+
+    @Override
+    public void deleteByKey(String key) {
+        delegate.deleteByKey(key);
+    }
+
+    @Override
+    public BatchResult saveAll(List<T> entities) {
+        return delegate.saveAll(entities);
+    }
+
+    @Override
+    public BatchResult updateAll(List<T> entities) {
+        return delegate.updateAll(entities);
+    }
+
+    @Override
+    public BatchResult deleteAll(List<String> keys) {
+        return delegate.deleteAll(keys);
+    }
+
+    @Override
+    public Integer getInlineCount() {
+        return delegate.getInlineCount();
+    }
+
+    @Override
+    public Integer getInlineCountFiltered(Expression filterExpression) {
+        return delegate.getInlineCountFiltered(filterExpression);
+    }
+
+    @Override
+    public List<T> getAll(QueryRequest req) {
+        return delegate.getAll(req);
+    }
+
+    @Override
+    public List<T> getAllFiltered(QueryRequest req) {
+        return delegate.getAllFiltered(req);
+    }
+
+    @Override
+    public KeysetPage<T> getPage(QueryRequest req, String continuationToken) {
+        return delegate.getPage(req, continuationToken);
+    }
+
+    @Override
+    public PageResult<T> getAllWithCount(QueryRequest req) {
+        return delegate.getAllWithCount(req);
+    }
+
+    @Override
+    public List<T> getAllFetchedByKey(String key) {
+        return delegate.getAllFetchedByKey(key);
+    }
+
+    @Override
+    public List<T> query(ConditionBuilder.Condition condition) {
+        return delegate.query(condition);
+    }
+
+    @Override
+    public Stream<T> stream(QueryRequest req) {
+        return delegate.stream(req);
+    }
+
+    @Override
+    public Stream<T> streamWhere(Map<String, Object> columnValues) {
+        return delegate.streamWhere(columnValues);
+    }
+
+    private Optional<T> cached(String cacheKey, Supplier<Optional<T>> loader) {
+        long now = System.nanoTime();
+        long loadSequence;
+        synchronized (entries) {
+            CacheEntry<T> entry = entries.get(cacheKey);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return Optional.of(entry.value);
+                }
+                entries.remove(cacheKey);
+                unindex(cacheKey, entry);
+                evictions.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            loadSequence = invalidationSequence;
+            loadsInFlight.merge(loadSequence, 1, Integer::sum);
+        }
+
+        Optional<T> loaded = Optional.empty();
+        try {
+            loaded = loader.get();
+            return loaded;
+        } finally {
+            synchronized (entries) {
+                if (loaded.isPresent()) {
+                    String ibnId = ibnIdOf.apply(loaded.get()).toString();
+                    // an invalidation of the same IBN while loading may have made the loaded value stale already
+                    if (clearedAt <= loadSequence && invalidatedAt.getOrDefault(ibnId, 0L) <= loadSequence) {
+                        entries.put(cacheKey, new CacheEntry<>(loaded.get(), ibnId, now));
+                        keysByIbnId.computeIfAbsent(ibnId, id -> new HashSet<>()).add(cacheKey);
+                    }
+                }
+                finishLoad(loadSequence);
+            }
+        }
+    }
+
+    private void finishLoad(long loadSequence) {
+        if (loadsInFlight.merge(loadSequence, -1, Integer::sum) == 0) {
+            loadsInFlight.remove(loadSequence);
+        }
+        if (loadsInFlight.isEmpty()) {
+            invalidatedAt.clear();
+        } else {
+            long oldestLoad = loadsInFlight.firstKey();
+            invalidatedAt.values().removeIf(sequence -> sequence <= oldestLoad);
+        }
+    }
+
+    private void evictIbn(String ibnId) {
+        synchronized (entries) {
+            long sequence = ++invalidationSequence;
+            if (!loadsInFlight.isEmpty()) {
+                invalidatedAt.put(ibnId, sequence);
+            }
+            Set<String> cacheKeys = keysByIbnId.remove(ibnId);
+            if (cacheKeys == null) {
+                return;
+            }
+            for (String cacheKey : cacheKeys) {
+                if (entries.remove(cacheKey) != null) {
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void unindex(String cacheKey, CacheEntry<T> entry) {
+        Set<String> cacheKeys = keysByIbnId.get(entry.ibnId);
+        if (cacheKeys != null) {
+            cacheKeys.remove(cacheKey);
+            if (cacheKeys.isEmpty()) {
+                keysByIbnId.remove(entry.ibnId);
+            }
+        }
+    }
+
+    private static class CacheEntry<T> {
+
+        private final T value;
+        private final String ibnId;
+        private final long loadedAt;
+
+        CacheEntry(T value, String ibnId, long loadedAt) {
+            this.value = value;
+            this.ibnId = ibnId;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -9,81 +9,250 @@ import com.sap.cloud.sdk.service.prov.api.filter.Expression;
 import com.sap.cloud.sdk.service.prov.api.request.OrderByExpression;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class CdsQueryBuilder {
 
+    private static final String[] ALL_COLUMNS = {"*"};
+
     public static CDSQuery buildSelectByKeysQuery(String entityName, Map<String, Object> keys) {
-        return new CDSSelectQueryBuilder(entityName)
+        List<Object> binds = new ArrayList<>();
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, ALL_COLUMNS, QueryFingerprint.keysShape(keys, binds), "");
+        return tag(new CDSSelectQueryBuilder(entityName)
                 .selectColumns("*")
                 .where(ExpressionParser.buildCondition(keys))
-                .build();
+                .build(), fingerprint, binds);
     }
 
     public static CDSQuery buildSelectAllQuery(String entityName, QueryRequest req) {
+        return buildSelectAllQuery(entityName, req, ALL_COLUMNS);
+    }
+
+    /**
+     * Selects only the columns named in the request's $select, see {@link #projection(DraftTable, List)}.
+     */
+    public static CDSQuery buildSelectAllQuery(DraftTable<?> table, QueryRequest req) {
+        return buildSelectAllQuery(table.getEntityName(), req, projection(table, req.getSelectProperties()));
+    }
+
+    private static CDSQuery buildSelectAllQuery(String entityName, QueryRequest req, String[] columns) {
 
         int skip = req.getSkipOptionValue() <= 0 ? Constants.DEFAULT_SKIP : req.getSkipOptionValue();
         int top = req.getTopOptionValue() <=0 ? Constants.DEFAULT_TOP : req.getTopOptionValue();
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, columns, "", QueryFingerprint.orderByShape(req.getOrderByProperties()));
+        List<Object> binds = Arrays.asList(top, skip);
 
         if (req.getOrderByProperties().isEmpty()) {
-            return new CDSSelectQueryBuilder(entityName)
+            return tag(new CDSSelectQueryBuilder(entityName)
                     .top(top)
                     .skip(skip)
-                    .selectColumns("*")
-                    .build();
+                    .selectColumns(columns)
+                    .build(), fingerprint, binds);
         }
 
-        return handleOrderBy(new CDSSelectQueryBuilder(entityName)
+        return tag(handleOrderBy(new CDSSelectQueryBuilder(entityName)
                         .top(top)
                         .skip(skip)
-                        .selectColumns("*"), req.getOrderByProperties())
-                .build();
+                        .selectColumns(columns), req.getOrderByProperties())
+                .build(), fingerprint, binds);
     }
 
     public static CDSQuery buildSelectByConditionQuery(String entityName, ConditionBuilder.Condition condition) {
-        return new CDSSelectQueryBuilder(entityName)
+        List<Object> binds = new ArrayList<>();
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, ALL_COLUMNS, QueryFingerprint.filterShape(condition, binds), "");
+        return tag(new CDSSelectQueryBuilder(entityName)
                 .selectColumns("*")
                 .where(condition)
-                .build();
+                .build(), fingerprint, binds);
     }
 
     public static CDSQuery buildSelectAllFilteredQuery(String entityName, QueryRequest req) {
+        return buildSelectAllFilteredQuery(entityName, req, FilterConditionCache.getInstance().parse(req.getQueryExpression()));
+    }
+
+    /**
+     * Same as {@link #buildSelectAllFilteredQuery(String, QueryRequest)} for a condition that was already parsed from
+     * the request's $filter. The query is fingerprinted from the $filter expression.
+     */
+    public static CDSQuery buildSelectAllFilteredQuery(String entityName, QueryRequest req, ConditionBuilder.Condition condition) {
+        return buildSelectAllFilteredQuery(entityName, req, condition, ALL_COLUMNS);
+    }
+
+    public static CDSQuery buildSelectAllFilteredQuery(DraftTable<?> table, QueryRequest req) {
+        return buildSelectAllFilteredQuery(table, req, FilterConditionCache.getInstance().parse(req.getQueryExpression()));
+    }
+
+    /**
+     * Selects only the columns named in the request's $select, see {@link #projection(DraftTable, List)}.
+     */
+    public static CDSQuery buildSelectAllFilteredQuery(DraftTable<?> table, QueryRequest req, ConditionBuilder.Condition condition) {
+        return buildSelectAllFilteredQuery(table.getEntityName(), req, condition, projection(table, req.getSelectProperties()));
+    }
+
+    private static CDSQuery buildSelectAllFilteredQuery(String entityName, QueryRequest req, ConditionBuilder.Condition condition, String[] columns) {
 
         int skip = req.getSkipOptionValue() <= 0 ? Constants.DEFAULT_SKIP : req.getSkipOptionValue();
         int top = req.getTopOptionValue() <=0 ? Constants.DEFAULT_TOP : req.getTopOptionValue();
+        List<Object> binds = new ArrayList<>();
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, columns,
+                QueryFingerprint.filterShape(req.getQueryExpression(), binds),
+                QueryFingerprint.orderByShape(req.getOrderByProperties()));
+        binds.add(top);
+        binds.add(skip);
 
         if (req.getOrderByProperties().isEmpty()) {
-            return new CDSSelectQueryBuilder(entityName)
+            return tag(new CDSSelectQueryBuilder(entityName)
                     .top(top)
                     .skip(skip)
-                    .selectColumns("*")
-                    .where(ExpressionParser.parseAsCondition(req.getQueryExpression()))
-                    .build();
+                    .selectColumns(columns)
+                    .where(condition)
+                    .build(), fingerprint, binds);
         }
 
-        return handleOrderByFiltered(
+        return tag(handleOrderByFiltered(
                 new CDSSelectQueryBuilder(entityName)
                         .top(top)
                         .skip(skip)
-                        .selectColumns("*")
-                        .where(ExpressionParser.parseAsCondition(req.getQueryExpression())), req.getOrderByProperties())
-                .build();
+                        .selectColumns(columns)
+                        .where(condition), req.getOrderByProperties())
+                .build(), fingerprint, binds);
+    }
+
+    /**
+     * Builds a keyset-paginated select. The request's $skip is ignored; the continuation token of the previous page,
+     * or {@code null} for the first page, decides where the page starts. $filter is applied when present.
+     */
+    public static <T> KeysetQuery<T> buildKeysetQuery(DraftTable<T> table, QueryRequest req, String continuationToken) {
+
+        int pageSize = req.getTopOptionValue() <= 0 ? Constants.DEFAULT_TOP : req.getTopOptionValue();
+        List<KeysetQuery.SortKey<T>> sortKeys = keysetSortKeys(table, req.getOrderByProperties());
+
+        ConditionBuilder.Condition condition = req.getQueryExpression() == null
+                ? null
+                : FilterConditionCache.getInstance().parse(req.getQueryExpression());
+        List<Object> binds = new ArrayList<>();
+        String filterShape = QueryFingerprint.filterShape(req.getQueryExpression(), binds);
+        if (continuationToken != null) {
+            List<Object> lastValues = KeysetQuery.decodeToken(sortKeys, continuationToken);
+            ConditionBuilder.Condition seek = KeysetQuery.seekCondition(sortKeys, lastValues);
+            condition = condition == null ? seek : condition.AND(seek);
+            // the seek predicate has the same shape for every page of a sort order
+            String seekShape = KeysetQuery.seekShape(sortKeys);
+            filterShape = filterShape.isEmpty() ? seekShape : "(" + filterShape + ") AND " + seekShape;
+            binds.addAll(lastValues);
+        }
+        binds.add(pageSize + 1);
+
+        // the sort columns are read back from the last row into the continuation token
+        List<String> sortColumns = new ArrayList<>();
+        List<String> orderTerms = new ArrayList<>();
+        for (KeysetQuery.SortKey<T> sortKey : sortKeys) {
+            sortColumns.add(sortKey.getColumn().getName());
+            orderTerms.add(QueryFingerprint.orderTerm(sortKey.getColumn().getName(), sortKey.isDescending()));
+        }
+        String[] columns = projection(table, req.getSelectProperties(), sortColumns);
+        QueryFingerprint fingerprint = QueryFingerprint.of(table.getEntityName(), columns, filterShape, String.join(", ", orderTerms));
+        CDSSelectQueryBuilder.SelectColumnBuilder selectColumnBuilder = new CDSSelectQueryBuilder(table.getEntityName())
+                .top(pageSize + 1)
+                .selectColumns(columns);
+        KeysetQuery.SortKey<T> first = sortKeys.get(0);
+        CDSSelectQueryBuilder.OrderByBuilder result = condition == null
+                ? selectColumnBuilder.orderBy(first.getColumn().getName(), first.isDescending())
+                : selectColumnBuilder.where(condition).orderBy(first.getColumn().getName(), first.isDescending());
+        for (KeysetQuery.SortKey<T> sortKey : sortKeys.subList(1, sortKeys.size())) {
+            result = result.orderBy(sortKey.getColumn().getName(), sortKey.isDescending());
+        }
+
+        return new KeysetQuery<>(tag(result.build(), fingerprint, binds), sortKeys, pageSize);
     }
 
     public static CDSQuery buildInlineCountQuery(String entityName, String keyName) {
-        return new CDSSelectQueryBuilder(entityName)
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, countColumn(keyName), "", "");
+        return tag(new CDSSelectQueryBuilder(entityName)
                 .count(keyName)
-                .build();
+                .build(), fingerprint, Collections.emptyList());
     }
 
     public static CDSQuery buildInlineCountFilteredQuery(String entityName, String keyName, Expression filterExpression) {
+        List<Object> binds = new ArrayList<>();
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, countColumn(keyName), QueryFingerprint.filterShape(filterExpression, binds), "");
+        return tag(countFiltered(entityName, keyName, FilterConditionCache.getInstance().parse(filterExpression)), fingerprint, binds);
+    }
+
+    /**
+     * Counts with a condition that was already parsed from {@code filterExpression}; the expression only serves as
+     * the fingerprint of the query.
+     */
+    static CDSQuery buildInlineCountFilteredQuery(String entityName, String keyName, Expression filterExpression, ConditionBuilder.Condition condition) {
+        List<Object> binds = new ArrayList<>();
+        QueryFingerprint fingerprint = QueryFingerprint.of(entityName, countColumn(keyName), QueryFingerprint.filterShape(filterExpression, binds), "");
+        return tag(countFiltered(entityName, keyName, condition), fingerprint, binds);
+    }
+
+    private static CDSQuery countFiltered(String entityName, String keyName, ConditionBuilder.Condition condition) {
         return new CDSSelectQueryBuilder(entityName)
                 .count(keyName)
-                .where(ExpressionParser.parseAsCondition(filterExpression))
+                .where(condition)
                 .build();
     }
 
+    private static String[] countColumn(String keyName) {
+        return new String[]{"COUNT(" + keyName + ")"};
+    }
+
+    private static CDSQuery tag(CDSQuery query, QueryFingerprint fingerprint, List<Object> binds) {
+        return SlowQueryLog.getInstance().tag(query, fingerprint, binds);
+    }
+
+    /**
+     * Maps $select properties to the table's columns, key column first. Properties that are not columns, such as
+     * navigation properties, are left out. Without $select, or with *, all columns are selected.
+     */
+    static String[] projection(DraftTable<?> table, List<String> selectProperties) {
+        return projection(table, selectProperties, Collections.emptyList());
+    }
+
+    static String[] projection(DraftTable<?> table, List<String> selectProperties, Collection<String> requiredColumns) {
+        if (selectProperties == null || selectProperties.isEmpty() || selectProperties.contains("*")) {
+            return ALL_COLUMNS;
+        }
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add(table.getKeyColumn());
+        columns.addAll(requiredColumns);
+        for (String selectProperty : selectProperties) {
+            DraftTable.Column<?> column = table.getColumn(selectProperty);
+            if (column != null) {
+                columns.add(column.getName());
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    private static <T> List<KeysetQuery.SortKey<T>> keysetSortKeys(DraftTable<T> table, List<OrderByExpression> orderByExpressions) {
+        List<KeysetQuery.SortKey<T>> sortKeys = new ArrayList<>();
+        boolean keyIncluded = false;
+        for (OrderByExpression orderByExpression : orderByExpressions) {
+            DraftTable.Column<T> column = table.getColumn(SqlQueryBuilder.resolveColumn(table, orderByExpression.getOrderByProperty()));
+            // a null sort value has no place in the seek condition, and nullable strings are read back as a default
+            if (!table.isNotNull(column.getName())) {
+                throw new IllegalArgumentException("Keyset pagination cannot sort by nullable column " + column.getName());
+            }
+            sortKeys.add(new KeysetQuery.SortKey<>(column, orderByExpression.isDescending()));
+            keyIncluded |= column.getName().equals(table.getKeyColumn());
+        }
+        if (!keyIncluded) {
+            sortKeys.add(new KeysetQuery.SortKey<>(table.getColumn(table.getKeyColumn()), false));
+        }
+        return sortKeys;
+    }
+
     private static CDSSelectQueryBuilder.OrderByBuilder handleOrderByFiltered(CDSSelectQueryBuilder.WhereBuilder whereBuilder, List<OrderByExpression> orderByExpressions) {
         OrderByExpression firstExpression = orderByExpressions.get(0);
         orderByExpressions.remove(0);
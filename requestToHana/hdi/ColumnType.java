@@ -0,0 +1,179 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+public enum ColumnType {
+
+    UUID(Types.NVARCHAR) {
+        @Override
+        void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+            statement.setString(index, value.toString());
+        }
+
+        @Override
+        public Object read(ResultSet resultSet, int index) throws SQLException {
+            String value = resultSet.getString(index);
+            return value == null ? null : java.util.UUID.fromString(value);
+        }
+
+        @Override
+        Object decodeValue(Object value) {
+            return value instanceof java.util.UUID ? value : java.util.UUID.fromString(value.toString());
+        }
+    },
+    STRING(Types.NVARCHAR) {
+        @Override
+        void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+            statement.setString(index, value.toString());
+        }
+
+        @Override
+        public Object read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getString(index);
+        }
+
+        @Override
+        Object decodeValue(Object value) {
+            return value.toString();
+        }
+
+        @Override
+        public Object absentValue() {
+            return Constants.NO_VALUE_STRING;
+        }
+    },
+    DECIMAL(Types.DECIMAL) {
+        @Override
+        void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+            statement.setBigDecimal(index, toBigDecimal(value));
+        }
+
+        @Override
+        public String format(Object value) {
+            return toBigDecimal(value).toPlainString();
+        }
+
+        @Override
+        public Object parse(String value) {
+            return new BigDecimal(value);
+        }
+
+        @Override
+        public Object read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getBigDecimal(index);
+        }
+
+        @Override
+        Object decodeValue(Object value) {
+            return toBigDecimal(value);
+        }
+    },
+    TIMESTAMP(Types.TIMESTAMP) {
+        @Override
+        void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+            statement.setTimestamp(index, toTimestamp(value));
+        }
+
+        @Override
+        public String format(Object value) {
+            return toTimestamp(value).toString();
+        }
+
+        @Override
+        public Object parse(String value) {
+            return Timestamp.valueOf(value);
+        }
+
+        @Override
+        public Object read(ResultSet resultSet, int index) throws SQLException {
+            Timestamp value = resultSet.getTimestamp(index);
+            return value == null ? null : value.toLocalDateTime();
+        }
+
+        @Override
+        Object decodeValue(Object value) {
+            return value instanceof Timestamp ? ((Timestamp) value).toLocalDateTime() : (LocalDateTime) value;
+        }
+    };
+
+    private final int sqlType;
+
+    ColumnType(int sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    public int getSqlType() {
+        return sqlType;
+    }
+
+    public void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, sqlType);
+        } else {
+            bindValue(statement, index, value);
+        }
+    }
+
+    /**
+     * Renders a value as text that {@link #parse(String)} turns back into a value the CDS and JDBC layers accept.
+     */
+    public String format(Object value) {
+        return value.toString();
+    }
+
+    public Object parse(String value) {
+        return value;
+    }
+
+    /**
+     * Reads a column straight from the driver into the type the draft entities use.
+     */
+    public abstract Object read(ResultSet resultSet, int index) throws SQLException;
+
+    /**
+     * Converts a value taken from CDS {@code EntityData} into the type the draft entities use.
+     */
+    public Object decode(Object value) {
+        return value == null ? null : decodeValue(value);
+    }
+
+    /**
+     * Value the draft entities get when the column is null or not part of the result.
+     */
+    public Object absentValue() {
+        return null;
+    }
+
+    abstract void bindValue(PreparedStatement statement, int index, Object value) throws SQLException;
+
+    abstract Object decodeValue(Object value);
+
+    /**
+     * Exact conversion: integral driver values are taken as they are, only other types go through their text.
+     */
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    private static Timestamp toTimestamp(Object value) {
+        return value instanceof LocalDateTime ? Timestamp.valueOf((LocalDateTime) value) : (Timestamp) value;
+    }
+}
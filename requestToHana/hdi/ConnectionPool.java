@@ -0,0 +1,198 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
+import com.sap.cloud.sdk.hana.connectivity.handler.DataSourceHandlerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of HDI connections for a single CDS namespace. Every pooled connection carries its own
+ * {@link com.sap.cloud.sdk.service.prov.rt.cds.CDSHandler}, so handlers are never shared between threads.
+ */
+public class ConnectionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final String BORROW_EXCEPTION_MESSAGE = "Error borrowing HDI container connection";
+
+    private final String namespace;
+    private final DataSource dataSource;
+    private final ConnectionPoolConfig config;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String namespace, DataSource dataSource, ConnectionPoolConfig config) {
+        this.namespace = namespace;
+        this.dataSource = dataSource;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hdi-pool-" + namespace);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                config.getHousekeepingIntervalMillis(), config.getHousekeepingIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public HdiSession borrow() {
+        if (closed) {
+            throw new DraftProviderException(BORROW_EXCEPTION_MESSAGE,
+                    new SQLTransientConnectionException("Connection pool for " + namespace + " is closed"));
+        }
+
+        acquirePermit();
+        try {
+            PooledConnection pooledConnection = pollValidIdle();
+            if (pooledConnection == null) {
+                pooledConnection = create();
+            }
+            pooledConnection.markBorrowed(config.getLeakDetectionThresholdMillis() > 0
+                    ? new Throwable("HDI connection borrowed here") : null);
+            active.add(pooledConnection);
+            return new HdiSession(this, pooledConnection);
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new DraftProviderException(BORROW_EXCEPTION_MESSAGE, e);
+        }
+    }
+
+    void release(PooledConnection pooledConnection, boolean broken) {
+        active.remove(pooledConnection);
+        try {
+            if (closed || broken || pooledConnection.isClosed()) {
+                destroy(pooledConnection);
+                return;
+            }
+            pooledConnection.resetState();
+            pooledConnection.markReturned();
+            idle.offerFirst(pooledConnection);
+
+        } catch (SQLException e) {
+            LOG.warn("Discarding HDI connection of namespace {} that could not be reset", namespace, e);
+            destroy(pooledConnection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public ConnectionPoolStats getStats() {
+        return new ConnectionPoolStats(namespace, active.size(), idle.size(), waiting.get(), config.getMaxSize(),
+                created.get(), destroyed.get(), borrowTimeouts.get(), leaksDetected.get());
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idle.pollFirst()) != null) {
+            destroy(pooledConnection);
+        }
+    }
+
+    private void acquirePermit() {
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new DraftProviderException(BORROW_EXCEPTION_MESSAGE, new SQLTransientConnectionException(
+                        "Timed out after " + config.getBorrowTimeoutMillis() + " ms waiting for a connection to " + namespace
+                                + " (" + getStats() + ")"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DraftProviderException(BORROW_EXCEPTION_MESSAGE, e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private PooledConnection pollValidIdle() {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idle.pollFirst()) != null) {
+            if (pooledConnection.isValid(config.getValidationTimeoutSeconds())) {
+                return pooledConnection;
+            }
+            LOG.debug("Evicting stale HDI connection of namespace {} on borrow", namespace);
+            destroy(pooledConnection);
+        }
+        return null;
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            PooledConnection pooledConnection = new PooledConnection(connection,
+                    DataSourceHandlerFactory.getInstance().getCDSHandler(connection, namespace));
+            created.incrementAndGet();
+            return pooledConnection;
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void destroy(PooledConnection pooledConnection) {
+        pooledConnection.closeQuietly();
+        destroyed.incrementAndGet();
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            LOG.warn("HDI connection pool housekeeping failed for namespace {}", namespace, e);
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && idle.size() > config.getMinIdle()) {
+            PooledConnection pooledConnection = oldestFirst.next();
+            if (now - pooledConnection.getLastReturnedAt() > config.getIdleTimeoutMillis() && idle.remove(pooledConnection)) {
+                destroy(pooledConnection);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = config.getLeakDetectionThresholdMillis();
+        if (threshold <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooledConnection : active) {
+            if (!pooledConnection.isLeakReported() && now - pooledConnection.getBorrowedAt() > threshold) {
+                pooledConnection.setLeakReported(true);
+                leaksDetected.incrementAndGet();
+                LOG.warn("HDI connection of namespace {} has been held for more than {} ms, possible leak",
+                        namespace, threshold, pooledConnection.getBorrowSite());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+public class ConnectionPoolConfig {
+
+    private static final String PROPERTY_PREFIX = "hdi.pool.";
+
+    private int maxSize = 10;
+    private int minIdle = 2;
+    private long borrowTimeoutMillis = 30_000;
+    private long idleTimeoutMillis = 600_000;
+    private int validationTimeoutSeconds = 5;
+    private long leakDetectionThresholdMillis = 60_000;
+    private long housekeepingIntervalMillis = 30_000;
+
+    public static ConnectionPoolConfig fromSystemProperties() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.maxSize = Integer.getInteger(PROPERTY_PREFIX + "maxSize", config.maxSize);
+        config.minIdle = Integer.getInteger(PROPERTY_PREFIX + "minIdle", config.minIdle);
+        config.borrowTimeoutMillis = Long.getLong(PROPERTY_PREFIX + "borrowTimeoutMillis", config.borrowTimeoutMillis);
+        config.idleTimeoutMillis = Long.getLong(PROPERTY_PREFIX + "idleTimeoutMillis", config.idleTimeoutMillis);
+        config.validationTimeoutSeconds = Integer.getInteger(PROPERTY_PREFIX + "validationTimeoutSeconds", config.validationTimeoutSeconds);
+        config.leakDetectionThresholdMillis = Long.getLong(PROPERTY_PREFIX + "leakDetectionThresholdMillis", config.leakDetectionThresholdMillis);
+        config.housekeepingIntervalMillis = Long.getLong(PROPERTY_PREFIX + "housekeepingIntervalMillis", config.housekeepingIntervalMillis);
+        return config;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public ConnectionPoolConfig setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public ConnectionPoolConfig setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+        return this;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public ConnectionPoolConfig setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public ConnectionPoolConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public ConnectionPoolConfig setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * A value of zero or less disables leak detection.
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    public ConnectionPoolConfig setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        return this;
+    }
+
+    public long getHousekeepingIntervalMillis() {
+        return housekeepingIntervalMillis;
+    }
+
+    public ConnectionPoolConfig setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+        this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+        return this;
+    }
+}
@@ -0,0 +1,71 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+public class ConnectionPoolStats {
+
+    private final String namespace;
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final int maxSize;
+    private final long created;
+    private final long destroyed;
+    private final long borrowTimeouts;
+    private final long leaksDetected;
+
+    ConnectionPoolStats(String namespace, int active, int idle, int waiting, int maxSize,
+                        long created, long destroyed, long borrowTimeouts, long leaksDetected) {
+        this.namespace = namespace;
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.maxSize = maxSize;
+        this.created = created;
+        this.destroyed = destroyed;
+        this.borrowTimeouts = borrowTimeouts;
+        this.leaksDetected = leaksDetected;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getDestroyed() {
+        return destroyed;
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts;
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{namespace=" + namespace + ", active=" + active + ", idle=" + idle
+                + ", waiting=" + waiting + ", maxSize=" + maxSize + ", created=" + created
+                + ", destroyed=" + destroyed + ", borrowTimeouts=" + borrowTimeouts
+                + ", leaksDetected=" + leaksDetected + '}';
+    }
+}
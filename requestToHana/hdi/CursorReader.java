@@ -0,0 +1,128 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams query results from a forward-only cursor. Rows are mapped one at a time as the stream is consumed, so
+ * memory stays flat regardless of the result size. The returned stream holds a pooled connection until it is
+ * exhausted or closed and must therefore be used in a try-with-resources block.
+ */
+public class CursorReader {
+
+    public static final int DEFAULT_FETCH_SIZE = Integer.getInteger("hdi.cursor.fetchSize", 1000);
+    private static final String CURSOR_EXCEPTION_MESSAGE = "Error reading JDBC cursor";
+
+    public static <T> Stream<T> stream(String namespace, SqlQuery query, RowMapper<T> mapper) {
+        return stream(namespace, query, DEFAULT_FETCH_SIZE, mapper);
+    }
+
+    public static <T> Stream<T> stream(String namespace, SqlQuery query, DraftMapper<T> mapper) {
+        return open(namespace, QueryFingerprint.shortName(mapper.getEntityName()), query, DEFAULT_FETCH_SIZE, mapper::compile);
+    }
+
+    /**
+     * Streams rows that are not mapped to one draft entity; the query counts against {@code SQL} in the current
+     * {@link RequestQueryCounter} scope.
+     */
+    public static <T> Stream<T> stream(String namespace, SqlQuery query, int fetchSize, RowMapper<T> mapper) {
+        return open(namespace, QueryFingerprint.ofSql(query).getEntity(), query, fetchSize, metaData -> mapper);
+    }
+
+    @FunctionalInterface
+    private interface MapperFactory<T> {
+        RowMapper<T> create(ResultSetMetaData metaData) throws SQLException;
+    }
+
+    private static <T> Stream<T> open(String namespace, String entity, SqlQuery query, int fetchSize, MapperFactory<T> mapperFactory) {
+        RequestQueryCounter.record(entity);
+        HdiSession session = DataSourceManager.getInstance().openSession(namespace);
+        PreparedStatement statement = null;
+        try {
+            statement = session.getConnection().prepareStatement(query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            query.bind(statement);
+            long start = System.nanoTime();
+            ResultSet resultSet = statement.executeQuery();
+            SlowQueryLog.getInstance().record(QueryFingerprint.ofSql(query), query.getParameters(), System.nanoTime() - start);
+            Cursor<T> cursor = new Cursor<>(session, statement, resultSet, mapperFactory.create(resultSet.getMetaData()));
+
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(statement);
+            session.close();
+            throw new DraftProviderException(CURSOR_EXCEPTION_MESSAGE, e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // nothing left to do with a cursor that is being abandoned
+        }
+    }
+
+    private static class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final HdiSession session;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final RowMapper<T> mapper;
+        private boolean closed;
+
+        Cursor(HdiSession session, PreparedStatement statement, ResultSet resultSet, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.session = session;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!resultSet.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.mapRow(resultSet));
+                return true;
+
+            } catch (SQLException e) {
+                close();
+                throw new DraftProviderException(CURSOR_EXCEPTION_MESSAGE, e);
+            } catch (RuntimeException e) {
+                // a failing mapper or consumer abandons the stream, which callers may never close
+                close();
+                throw e;
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeQuietly(resultSet);
+            closeQuietly(statement);
+            session.close();
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package com.burberry.pptl.odata.ibn.manage.hdi;
 
 import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
-import com.sap.cloud.sdk.hana.connectivity.handler.DataSourceHandlerFactory;
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSException;
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSQuery;
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSSelectQueryResult;
 import com.sap.cloud.sdk.service.prov.rt.cds.CDSHandler;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
-import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataSourceManager {
 
-    private CDSHandler dataSourceHandler;
+    private static final String HDI_CONTAINER_JNDI_NAME = "java:comp/env/jdbc/java-hdi-container";
+
+    private final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private final Map<String, DataSource> registeredDataSources = new ConcurrentHashMap<>();
+    private volatile DataSource containerDataSource;
+    private volatile ConnectionPoolConfig poolConfig = ConnectionPoolConfig.fromSystemProperties();
 
     public static DataSourceManager getInstance() {
         return InstanceHolder.INSTANCE;
@@ -24,18 +33,103 @@ public class DataSourceManager {
         private static final DataSourceManager INSTANCE = new DataSourceManager();
     }
 
-    public CDSHandler getCDSHandler(String namespace) {
-        if (dataSourceHandler == null) {
+    @FunctionalInterface
+    public interface HandlerCallback<R> {
+        R execute(CDSHandler handler) throws CDSException;
+    }
+
+    @FunctionalInterface
+    public interface HandlerAction {
+        void execute(CDSHandler handler) throws CDSException;
+    }
+
+    /**
+     * Borrows a pooled connection for the namespace. The caller owns the session and must close it.
+     */
+    public HdiSession openSession(String namespace) {
+        return pools.computeIfAbsent(namespace, this::createPool).borrow();
+    }
+
+    public <R> R execute(String namespace, HandlerCallback<R> callback) throws CDSException {
+        try (HdiSession session = openSession(namespace)) {
+            return callback.execute(session.getCDSHandler());
+        }
+    }
+
+    /**
+     * Executes a select and records its latency in the {@link SlowQueryLog} under the fingerprint the query was
+     * tagged with by {@link CdsQueryBuilder}. The query counts against the entity of that fingerprint in the current
+     * {@link RequestQueryCounter} scope.
+     */
+    public CDSSelectQueryResult select(String namespace, CDSQuery query) throws CDSException {
+        SlowQueryLog.Tag tag = SlowQueryLog.getInstance().tagOf(query);
+        RequestQueryCounter.record(tag.getFingerprint().getEntity());
+        long start = System.nanoTime();
+        try {
+            return execute(namespace, handler -> handler.executeQuery(query));
+        } finally {
+            SlowQueryLog.getInstance().record(tag.getFingerprint(), tag.getBinds(), System.nanoTime() - start);
+        }
+    }
+
+    public void run(String namespace, HandlerAction action) throws CDSException {
+        try (HdiSession session = openSession(namespace)) {
+            action.execute(session.getCDSHandler());
+        }
+    }
+
+    /**
+     * Overrides the HDI container lookup for a namespace, e.g. with a local H2 data source. Any pool already
+     * opened for the namespace is closed so that the next borrow uses the new data source.
+     */
+    public void registerDataSource(String namespace, DataSource dataSource) {
+        registeredDataSources.put(namespace, dataSource);
+        closePool(namespace);
+    }
+
+    /**
+     * Applies to pools created from now on; call {@link #shutdown()} first to resize pools that are already open.
+     */
+    public void configure(ConnectionPoolConfig config) {
+        this.poolConfig = config;
+    }
+
+    public ConnectionPoolStats getPoolStats(String namespace) {
+        ConnectionPool pool = pools.get(namespace);
+        return pool == null ? null : pool.getStats();
+    }
+
+    public Map<String, ConnectionPoolStats> getPoolStats() {
+        Map<String, ConnectionPoolStats> stats = new TreeMap<>();
+        pools.forEach((namespace, pool) -> stats.put(namespace, pool.getStats()));
+        return stats;
+    }
+
+    public void shutdown() {
+        pools.keySet().forEach(this::closePool);
+    }
+
+    private void closePool(String namespace) {
+        ConnectionPool pool = pools.remove(namespace);
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool createPool(String namespace) {
+        DataSource dataSource = registeredDataSources.get(namespace);
+        return new ConnectionPool(namespace, dataSource != null ? dataSource : lookupContainerDataSource(), poolConfig);
+    }
+
+    private DataSource lookupContainerDataSource() {
+        if (containerDataSource == null) {
             try {
                 Context ctx = new InitialContext();
-                DataSource dataSource = ((DataSource) ctx.lookup("java:comp/env/jdbc/java-hdi-container"));
-                dataSourceHandler = DataSourceHandlerFactory.getInstance().getCDSHandler(dataSource.getConnection(), namespace);
-                return dataSourceHandler;
-
-            } catch (SQLException | NamingException e) {
+                containerDataSource = (DataSource) ctx.lookup(HDI_CONTAINER_JNDI_NAME);
+            } catch (NamingException e) {
                 throw new DraftProviderException("Error initializing HDI container connection", e);
             }
         }
-        return dataSourceHandler;
+        return containerDataSource;
     }
 }
@@ -0,0 +1,175 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.helpers.Dictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable copy of the country and transport lookups of {@link Dictionary}. Reads go to the current snapshot
+ * without locking; a name seen for the first time is resolved once through the dictionary and published with a
+ * new snapshot. All known names are re-resolved in the background on a schedule.
+ * <p>
+ * The dictionary cannot list its entries, so the startup preload covers the names configured in
+ * {@code hdi.dictionary.countries} and {@code hdi.dictionary.transports} (comma separated) and the snapshot
+ * grows with every new name after that.
+ */
+public class DictionarySnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DictionarySnapshot.class);
+    private static final long REFRESH_INTERVAL_MINUTES = Long.getLong("hdi.dictionary.refreshMinutes", 60L);
+
+    private final Function<String, String> countrySource;
+    private final Function<String, String> transportSource;
+    private final AtomicLong countryMisses = new AtomicLong();
+    private final AtomicLong transportMisses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile Snapshot current = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    public static DictionarySnapshot getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    DictionarySnapshot(Function<String, String> countrySource, Function<String, String> transportSource) {
+        this.countrySource = countrySource;
+        this.transportSource = transportSource;
+    }
+
+    private static class InstanceHolder {
+        private static final DictionarySnapshot INSTANCE = createDefault();
+    }
+
+    private static DictionarySnapshot createDefault() {
+        DictionarySnapshot snapshot = new DictionarySnapshot(
+                name -> Dictionary.getInstance().getCountryId(name),
+                name -> Dictionary.getInstance().getMethodOfTransportationId(name));
+        snapshot.preload(configuredNames("hdi.dictionary.countries"), configuredNames("hdi.dictionary.transports"));
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hdi-dictionary-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(snapshot::refreshQuietly, REFRESH_INTERVAL_MINUTES, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        return snapshot;
+    }
+
+    public String getCountryId(String countryName) {
+        Map<String, String> countries = current.countries;
+        if (countries.containsKey(countryName)) {
+            return countries.get(countryName);
+        }
+        countryMisses.incrementAndGet();
+        String countryId = countrySource.apply(countryName);
+        merge(Collections.singletonMap(countryName, countryId), Collections.emptyMap());
+        return countryId;
+    }
+
+    public String getMethodOfTransportationId(String methodOfTransportation) {
+        Map<String, String> transports = current.transports;
+        if (transports.containsKey(methodOfTransportation)) {
+            return transports.get(methodOfTransportation);
+        }
+        transportMisses.incrementAndGet();
+        String transportId = transportSource.apply(methodOfTransportation);
+        merge(Collections.emptyMap(), Collections.singletonMap(methodOfTransportation, transportId));
+        return transportId;
+    }
+
+    /**
+     * Resolves the given names up front so the first conversions do not have to.
+     */
+    public void preload(Collection<String> countryNames, Collection<String> transportNames) {
+        merge(resolve(countryNames, countrySource), resolve(transportNames, transportSource));
+    }
+
+    /**
+     * Re-resolves every known name and swaps in the result. Readers keep using the previous snapshot meanwhile.
+     */
+    public void refresh() {
+        Snapshot known = current;
+        // merged rather than replaced, so names first seen while the refresh was running are kept
+        merge(resolve(known.countries.keySet(), countrySource), resolve(known.transports.keySet(), transportSource));
+        refreshes.incrementAndGet();
+    }
+
+    public long getCountryMisses() {
+        return countryMisses.get();
+    }
+
+    public long getTransportMisses() {
+        return transportMisses.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public int size() {
+        Snapshot snapshot = current;
+        return snapshot.countries.size() + snapshot.transports.size();
+    }
+
+    private synchronized void merge(Map<String, String> countries, Map<String, String> transports) {
+        Snapshot snapshot = current;
+        current = new Snapshot(copyWith(snapshot.countries, countries), copyWith(snapshot.transports, transports));
+    }
+
+    private static Map<String, String> copyWith(Map<String, String> published, Map<String, String> additions) {
+        if (additions.isEmpty()) {
+            return published;
+        }
+        Map<String, String> copy = new HashMap<>(published);
+        copy.putAll(additions);
+        return copy;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            LOG.warn("Refreshing the dictionary snapshot failed, keeping the previous one", e);
+        }
+    }
+
+    private static Map<String, String> resolve(Collection<String> names, Function<String, String> source) {
+        Map<String, String> resolved = new HashMap<>();
+        for (String name : names) {
+            resolved.put(name, source.apply(name));
+        }
+        return resolved;
+    }
+
+    private static Collection<String> configuredNames(String property) {
+        String value = System.getProperty(property, "");
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The maps are never modified once the snapshot is published.
+     */
+    private static class Snapshot {
+
+        private final Map<String, String> countries;
+        private final Map<String, String> transports;
+
+        Snapshot(Map<String, String> countries, Map<String, String> transports) {
+            this.countries = countries;
+            this.transports = transports;
+        }
+    }
+}
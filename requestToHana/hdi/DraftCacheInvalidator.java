@@ -0,0 +1,83 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts the IBNs whose drafts changed to every {@link CachingProvider}, so a write on one level evicts the
+ * cached entries of the other levels of the same tree. The write paths publish themselves once their change is
+ * committed: the providers' single and batched writes, {@link DraftUnitOfWork} and {@link DraftTreeDeleter}.
+ * <p>
+ * Listeners are held weakly, so a discarded cache stops listening without being detached; whoever registers a
+ * listener keeps the reference to it.
+ */
+public class DraftCacheInvalidator {
+
+    static final String IBN_KEY_NAME = "IBNID";
+
+    private final List<WeakReference<Consumer<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    public static DraftCacheInvalidator getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private DraftCacheInvalidator() {
+    }
+
+    private static class InstanceHolder {
+        private static final DraftCacheInvalidator INSTANCE = new DraftCacheInvalidator();
+    }
+
+    public void addListener(Consumer<String> listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+
+    public void removeListener(Consumer<String> listener) {
+        listeners.removeIf(reference -> {
+            Consumer<String> registered = reference.get();
+            return registered == null || registered == listener;
+        });
+    }
+
+    public void invalidate(String ibnId) {
+        boolean collected = false;
+        for (WeakReference<Consumer<String>> reference : listeners) {
+            Consumer<String> listener = reference.get();
+            if (listener == null) {
+                collected = true;
+            } else {
+                listener.accept(ibnId);
+            }
+        }
+        if (collected) {
+            listeners.removeIf(reference -> reference.get() == null);
+        }
+    }
+
+    public void invalidate(UUID ibnId) {
+        if (ibnId != null) {
+            invalidate(ibnId.toString());
+        }
+    }
+
+    /**
+     * Invalidates the IBNs the given rows of a draft table belong to.
+     */
+    public <T> void invalidateRows(DraftTable<T> table, Collection<T> rows) {
+        DraftTable.Column<T> ibnIdColumn = table.getColumn(IBN_KEY_NAME);
+        Set<String> ibnIds = new LinkedHashSet<>();
+        for (T row : rows) {
+            Object ibnId = ibnIdColumn.valueOf(row);
+            if (ibnId != null) {
+                ibnIds.add(ibnId.toString());
+            }
+        }
+        ibnIds.forEach(this::invalidate);
+    }
+}
@@ -5,7 +5,6 @@ import com.burberry.pptl.odata.ibn.manage.service.extension.ibnheader.InboundDel
 import com.burberry.pptl.odata.ibn.manage.service.extension.ibnitem.InboundDeliveryItemExtension;
 import com.burberry.pptl.odata.ibn.manage.service.extension.ibnitemsize.InboundDeliveryItemSizeExtension;
 import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
-import com.burberry.pptl.odata.ibn.manage.service.helpers.Dictionary;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
@@ -14,24 +13,43 @@ import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDr
 import java.time.ZoneOffset;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Converts drafts into their extensions. A list, or a draft with its converted children, of at least
+ * {@code hdi.converter.parallelThreshold} drafts in total is converted on a dedicated fork-join pool; the result keeps
+ * the order of the input either way.
+ */
 public class DraftConverter {
 
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("hdi.converter.parallelThreshold", 1000);
+    private static final int PARALLELISM = Integer.getInteger("hdi.converter.parallelism", Runtime.getRuntime().availableProcessors());
+
     public static InboundDeliveryHeadExtension deepConvertFromIBNHeaderDraft(IBNHeaderDraft headerDraft) {
+        return convertTree(treeSize(headerDraft), parallel -> deepConvert(headerDraft, parallel));
+    }
+
+    private static InboundDeliveryHeadExtension deepConvert(IBNHeaderDraft headerDraft, boolean parallel) {
         InboundDeliveryHeadExtension extension = new InboundDeliveryHeadExtension();
         extension.populateBaseFields(headerDraft.toMapOfFields());
-        extension.setCountryOfOriginID(Dictionary.getInstance().getCountryId(extension.getCountryOfOrigin()));
-        extension.setCollectionCountryID(Dictionary.getInstance().getCountryId(extension.getCollectionCountry()));
-        extension.setDestCountryID(Dictionary.getInstance().getCountryId(extension.getDestCountryName()));
-        extension.setMethodOfTransportationID(Dictionary.getInstance().getMethodOfTransportationId(extension.getMethodOfTransportation()));
+        DictionarySnapshot dictionary = DictionarySnapshot.getInstance();
+        extension.setCountryOfOriginID(dictionary.getCountryId(extension.getCountryOfOrigin()));
+        extension.setCollectionCountryID(dictionary.getCountryId(extension.getCollectionCountry()));
+        extension.setDestCountryID(dictionary.getCountryId(extension.getDestCountryName()));
+        extension.setMethodOfTransportationID(dictionary.getMethodOfTransportationId(extension.getMethodOfTransportation()));
         extension.setStatus(headerDraft.getStatus());
-        extension.setCreatedAt(headerDraft.getCreatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli());
+        // not selected when the request projects it away
+        if (headerDraft.getCreatedAt() != null) {
+            extension.setCreatedAt(headerDraft.getCreatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli());
+        }
         extension.setAWBNumber(headerDraft.getAWBNumber());
         extension.setHasBoxes(headerDraft.getBoxesIfPresent().isPresent());
         extension.setIsDraft(true);
-        extension.setIBNBoxExtensions(convertAllIBNBoxDrafts(headerDraft.getBoxesIfPresent().orElse(Collections.emptyList())));
-        extension.setIBNItemExtensions(convertAllIBNItemDrafts(headerDraft.getItemsIfPresent().orElse(Collections.emptyList())));
+        extension.setIBNBoxExtensions(map(headerDraft.getBoxesIfPresent().orElse(Collections.emptyList()), DraftConverter::convertFromIBNBoxDraft, parallel));
+        extension.setIBNItemExtensions(map(headerDraft.getItemsIfPresent().orElse(Collections.emptyList()), DraftConverter::convertFromIBNItemDraft, parallel));
 
         return extension;
     }
@@ -40,12 +58,16 @@ public class DraftConverter {
         InboundDeliveryHeadExtension extension = new InboundDeliveryHeadExtension();
         extension.populateBaseFields(headerDraft.toMapOfFields());
         extension.setIbnId(headerDraft.getIbnId());
-        extension.setCountryOfOriginID(Dictionary.getInstance().getCountryId(extension.getCountryOfOrigin()));
-        extension.setCollectionCountryID(Dictionary.getInstance().getCountryId(extension.getCollectionCountry()));
-        extension.setDestCountryID(Dictionary.getInstance().getCountryId(extension.getDestCountryName()));
-        extension.setMethodOfTransportationID(Dictionary.getInstance().getMethodOfTransportationId(extension.getMethodOfTransportation()));
+        DictionarySnapshot dictionary = DictionarySnapshot.getInstance();
+        extension.setCountryOfOriginID(dictionary.getCountryId(extension.getCountryOfOrigin()));
+        extension.setCollectionCountryID(dictionary.getCountryId(extension.getCollectionCountry()));
+        extension.setDestCountryID(dictionary.getCountryId(extension.getDestCountryName()));
+        extension.setMethodOfTransportationID(dictionary.getMethodOfTransportationId(extension.getMethodOfTransportation()));
         extension.setStatus(headerDraft.getStatus());
-        extension.setCreatedAt(headerDraft.getCreatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli());
+        // not selected when the request projects it away
+        if (headerDraft.getCreatedAt() != null) {
+            extension.setCreatedAt(headerDraft.getCreatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli());
+        }
         extension.setAWBNumber(headerDraft.getAWBNumber());
         extension.setHasBoxes(headerDraft.getBoxesIfPresent().isPresent());
         extension.setIsDraft(true);
@@ -54,10 +76,7 @@ public class DraftConverter {
     }
 
     public static List<InboundDeliveryHeadExtension> convertAllIBNHeaderDrafts(List<IBNHeaderDraft> headerDrafts) {
-        return headerDrafts
-                .stream()
-                .map(DraftConverter::convertFromIBNHeaderDraft)
-                .collect(Collectors.toList());
+        return convertAll(headerDrafts, DraftConverter::convertFromIBNHeaderDraft);
     }
 
 
@@ -74,21 +93,22 @@ public class DraftConverter {
     }
 
     public static InboundDeliveryBoxExtension deepConvertFromIBNBoxDraft(IBNBoxDraft ibnBoxDraft) {
+        return convertTree(treeSize(ibnBoxDraft), parallel -> deepConvert(ibnBoxDraft, parallel));
+    }
+
+    private static InboundDeliveryBoxExtension deepConvert(IBNBoxDraft ibnBoxDraft, boolean parallel) {
         InboundDeliveryBoxExtension extension = new InboundDeliveryBoxExtension();
         extension.populateBaseFields(ibnBoxDraft.toMapOfFields());
         extension.setDraftBoxId(ibnBoxDraft.getHanaBoxId());
         extension.setIbnId(ibnBoxDraft.getIbnId());
         extension.setIsDraft(true);
-        extension.setIBNItemExtensions(convertAllIBNItemDrafts(ibnBoxDraft.getItemsIfPresent().orElse(Collections.emptyList())));
+        extension.setIBNItemExtensions(map(ibnBoxDraft.getItemsIfPresent().orElse(Collections.emptyList()), DraftConverter::convertFromIBNItemDraft, parallel));
 
         return extension;
     }
 
     public static List<InboundDeliveryBoxExtension> convertAllIBNBoxDrafts(List<IBNBoxDraft> headerDrafts) {
-        return headerDrafts
-                .stream()
-                .map(DraftConverter::convertFromIBNBoxDraft)
-                .collect(Collectors.toList());
+        return convertAll(headerDrafts, DraftConverter::convertFromIBNBoxDraft);
     }
 
     public static InboundDeliveryItemExtension convertFromIBNItemDraft(IBNItemDraft ibnItemDraft) {
@@ -106,24 +126,26 @@ public class DraftConverter {
     }
 
     public static InboundDeliveryItemExtension deepConvertFromIBNItemDraft(IBNItemDraft itemDraft) {
+        return convertTree(treeSize(itemDraft), parallel -> deepConvert(itemDraft, parallel));
+    }
+
+    private static InboundDeliveryItemExtension deepConvert(IBNItemDraft itemDraft, boolean parallel) {
         InboundDeliveryItemExtension extension = new InboundDeliveryItemExtension();
         extension.populateBaseFields(itemDraft.toMapOfFields());
+        extension.setId(itemDraft.getItemId().toString());
         extension.setPONumber(Constants.NO_VALUE_STRING);
         extension.setPOItemNumber(Constants.NO_VALUE_STRING);
         extension.setIBNItemNumber(Constants.NO_VALUE_STRING);
         extension.setItemId(itemDraft.getItemId());
         extension.setHasSizes(itemDraft.getSizesIfPresent().isPresent());
         extension.setIsDraft(true);
-        extension.setIBNItemSizeExtensions(convertAllIBNItemSizeDrafts(itemDraft.getSizesIfPresent().orElse(Collections.emptyList())));
+        extension.setIBNItemSizeExtensions(map(itemDraft.getSizesIfPresent().orElse(Collections.emptyList()), DraftConverter::convertFromIBNItemSizeDraft, parallel));
 
         return extension;
     }
 
     public static List<InboundDeliveryItemExtension> convertAllIBNItemDrafts(List<IBNItemDraft> itemDrafts) {
-        return itemDrafts
-                .stream()
-                .map(DraftConverter::convertFromIBNItemDraft)
-                .collect(Collectors.toList());
+        return convertAll(itemDrafts, DraftConverter::convertFromIBNItemDraft);
     }
 
     public static InboundDeliveryItemSizeExtension convertFromIBNItemSizeDraft(IBNItemSizeDraft ibnItemSizeDraft) {
@@ -135,9 +157,57 @@ public class DraftConverter {
     }
 
     public static List<InboundDeliveryItemSizeExtension> convertAllIBNItemSizeDrafts(List<IBNItemSizeDraft> itemSizeDrafts) {
-        return itemSizeDrafts
-                .stream()
-                .map(DraftConverter::convertFromIBNItemSizeDraft)
+        return convertAll(itemSizeDrafts, DraftConverter::convertFromIBNItemSizeDraft);
+    }
+
+    private static <S, R> List<R> convertAll(List<S> drafts, Function<S, R> converter) {
+        return convertTree(drafts.size(), parallel -> map(drafts, converter, parallel));
+    }
+
+    @FunctionalInterface
+    private interface Conversion<R> {
+        R convert(boolean parallel);
+    }
+
+    /**
+     * Runs a conversion of {@code treeSize} drafts, in parallel on the conversion pool if the tree is large enough.
+     */
+    private static <R> R convertTree(int treeSize, Conversion<R> conversion) {
+        if (treeSize < PARALLEL_THRESHOLD || PARALLELISM <= 1) {
+            return conversion.convert(false);
+        }
+        // parallel streams started inside the pool run on the pool's workers, however deep they are nested
+        return ConversionPoolHolder.POOL.submit(() -> conversion.convert(true)).join();
+    }
+
+    private static <S, R> List<R> map(List<S> drafts, Function<S, R> converter, boolean parallel) {
+        // toList keeps encounter order
+        return (parallel ? drafts.parallelStream() : drafts.stream())
+                .map(converter)
                 .collect(Collectors.toList());
     }
+
+    // the deep conversions convert one level of children, so that is the size of what they convert
+
+    private static int treeSize(IBNHeaderDraft headerDraft) {
+        return 1 + headerDraft.getBoxesIfPresent().map(List::size).orElse(0)
+                + headerDraft.getItemsIfPresent().map(List::size).orElse(0);
+    }
+
+    private static int treeSize(IBNBoxDraft boxDraft) {
+        return 1 + boxDraft.getItemsIfPresent().map(List::size).orElse(0);
+    }
+
+    private static int treeSize(IBNItemDraft itemDraft) {
+        return 1 + itemDraft.getSizesIfPresent().map(List::size).orElse(0);
+    }
+
+    private static class ConversionPoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("hdi-convert-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
 }
@@ -0,0 +1,321 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
+import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
+import com.sap.cloud.sdk.service.prov.api.request.OrderByExpression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads draft headers together with an expanded path (Items, Items/Sizes, Boxes, Boxes/Items or Boxes/Items/Sizes)
+ * in a single statement. The root headers are paged in a derived table, so $top and $skip count headers and not
+ * joined rows; the child tables are left joined on IBNID, HANABOXID and ITEMID. The result is ordered by header,
+ * box, item and size, which lets the graph be rebuilt in one pass over the rows.
+ * <p>
+ * $filter only translates to CDS conditions and cannot be put into the derived table. Headers read through CDS are
+ * expanded by {@link #attach(List, ExpandPath)} instead, which reads each level with an IN list over the header ids.
+ */
+public class DraftExpander {
+
+    private static final String ENTITY_NAMESPACE = "pptl.odata.ibn.manage.db";
+    private static final String EXPAND_EXCEPTION_MESSAGE = "Error reading expanded drafts";
+    private static final String HEADER = "H_";
+    private static final String BOX = "B_";
+    private static final String ITEM = "I_";
+    private static final String SIZE = "S_";
+    private static final String IBN_KEY_NAME = "IBNID";
+    private static final int IN_LIST_SIZE = Integer.getInteger("hdi.expand.inListSize", 500);
+
+    public List<IBNHeaderDraft> expand(QueryRequest req, ExpandPath path) {
+        if (req.getQueryExpression() != null) {
+            throw new IllegalArgumentException("$filter cannot be combined with a joined $expand");
+        }
+        SqlQuery query = buildQuery(req, path);
+        RequestQueryCounter.record(QueryFingerprint.shortName(IBNHeaderDraftProvider.TABLE.getEntityName()));
+
+        try (HdiSession session = DataSourceManager.getInstance().openSession(ENTITY_NAMESPACE);
+             PreparedStatement statement = session.getConnection().prepareStatement(query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(CursorReader.DEFAULT_FETCH_SIZE);
+            query.bind(statement);
+            long start = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                SlowQueryLog.getInstance().record(QueryFingerprint.ofSql(query), query.getParameters(), System.nanoTime() - start);
+                return rebuild(resultSet, path);
+            }
+        } catch (SQLException e) {
+            throw new DraftProviderException(EXPAND_EXCEPTION_MESSAGE, e);
+        }
+    }
+
+    /**
+     * Expands headers that were already read, one statement per level and per {@code hdi.expand.inListSize} headers.
+     * Only the levels of the path are read.
+     */
+    public List<IBNHeaderDraft> attach(List<IBNHeaderDraft> headers, ExpandPath path) {
+        if (headers.isEmpty()) {
+            return headers;
+        }
+        List<String> ibnIds = headers.stream().map(header -> header.getIbnId().toString()).collect(Collectors.toList());
+
+        List<IBNItemDraft> items = path.items
+                ? readByIbnIds(IBNItemDraftProvider.TABLE, IBNItemDraftProvider.MAPPER, ibnIds)
+                : Collections.emptyList();
+        if (path.sizes) {
+            DraftTreeLoader.attachSizes(items, readByIbnIds(IBNItemSizeDraftProvider.TABLE, IBNItemSizeDraftProvider.MAPPER, ibnIds));
+        }
+
+        if (path.boxes) {
+            List<IBNBoxDraft> boxes = readByIbnIds(IBNBoxDraftProvider.TABLE, IBNBoxDraftProvider.MAPPER, ibnIds);
+            if (path.items) {
+                DraftTreeLoader.attachItems(boxes, items);
+            }
+            Map<UUID, List<IBNBoxDraft>> boxesByHeader = boxes.stream().collect(Collectors.groupingBy(IBNBoxDraft::getIbnId));
+            for (IBNHeaderDraft header : headers) {
+                header.setBoxes(boxesByHeader.getOrDefault(header.getIbnId(), new ArrayList<>()));
+            }
+        } else {
+            Map<UUID, List<IBNItemDraft>> itemsByHeader = items.stream().collect(Collectors.groupingBy(IBNItemDraft::getIbnId));
+            for (IBNHeaderDraft header : headers) {
+                header.setItems(itemsByHeader.getOrDefault(header.getIbnId(), new ArrayList<>()));
+            }
+        }
+        return headers;
+    }
+
+    private static <T> List<T> readByIbnIds(DraftTable<T> table, DraftMapper<T> mapper, List<String> ibnIds) {
+        List<T> rows = new ArrayList<>();
+        for (int from = 0; from < ibnIds.size(); from += IN_LIST_SIZE) {
+            List<String> chunk = ibnIds.subList(from, Math.min(from + IN_LIST_SIZE, ibnIds.size()));
+            try (Stream<T> stream = CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectInQuery(table, IBN_KEY_NAME, chunk), mapper)) {
+                stream.forEach(rows::add);
+            }
+        }
+        return rows;
+    }
+
+    static SqlQuery buildQuery(QueryRequest req, ExpandPath path) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        List<String> columns = new ArrayList<>();
+        addColumns(columns, "h", HEADER, rootColumns(req));
+        if (path.boxes) {
+            addColumns(columns, "b", BOX, allColumns(IBNBoxDraftProvider.TABLE));
+        }
+        if (path.items) {
+            addColumns(columns, "i", ITEM, allColumns(IBNItemDraftProvider.TABLE));
+        }
+        if (path.sizes) {
+            addColumns(columns, "s", SIZE, allColumns(IBNItemSizeDraftProvider.TABLE));
+        }
+        sql.append(String.join(", ", columns));
+
+        // $top and $skip apply to the headers, so they are paged before the children are joined
+        sql.append(" FROM (SELECT * FROM ").append(IBNHeaderDraftProvider.TABLE.getTableName());
+        SqlQueryBuilder.appendOrderBy(sql, IBNHeaderDraftProvider.TABLE, req.getOrderByProperties());
+        SqlQueryBuilder.appendLimit(sql, req.getTopOptionValue() <= 0 ? Constants.DEFAULT_TOP : req.getTopOptionValue(), req.getSkipOptionValue());
+        sql.append(") h");
+
+        if (path.boxes) {
+            sql.append(" LEFT JOIN ").append(IBNBoxDraftProvider.TABLE.getTableName()).append(" b ON b.IBNID = h.IBNID");
+        }
+        if (path.items && path.boxes) {
+            sql.append(" LEFT JOIN ").append(IBNItemDraftProvider.TABLE.getTableName())
+                    .append(" i ON i.IBNID = b.IBNID AND i.HANABOXID = b.HANABOXID");
+        } else if (path.items) {
+            sql.append(" LEFT JOIN ").append(IBNItemDraftProvider.TABLE.getTableName()).append(" i ON i.IBNID = h.IBNID");
+        }
+        if (path.sizes) {
+            sql.append(" LEFT JOIN ").append(IBNItemSizeDraftProvider.TABLE.getTableName())
+                    .append(" s ON s.IBNID = i.IBNID AND s.ITEMID = i.ITEMID");
+        }
+
+        String separator = " ORDER BY ";
+        for (OrderByExpression orderByExpression : req.getOrderByProperties()) {
+            sql.append(separator)
+                    .append("h.").append(SqlQueryBuilder.resolveColumn(IBNHeaderDraftProvider.TABLE, orderByExpression.getOrderByProperty()))
+                    .append(orderByExpression.isDescending() ? " DESC" : " ASC");
+            separator = ", ";
+        }
+        sql.append(separator).append("h.IBNID");
+        if (path.boxes) {
+            sql.append(", b.HANABOXID");
+        }
+        if (path.items) {
+            sql.append(", i.ITEMID");
+        }
+        if (path.sizes) {
+            sql.append(", s.SIZEID");
+        }
+
+        return new SqlQuery(sql.toString(), new ArrayList<>());
+    }
+
+    private static List<IBNHeaderDraft> rebuild(ResultSet resultSet, ExpandPath path) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        RowMapper<IBNHeaderDraft> headerMapper = IBNHeaderDraftProvider.MAPPER.compile(metaData, HEADER);
+        RowMapper<IBNBoxDraft> boxMapper = path.boxes ? IBNBoxDraftProvider.MAPPER.compile(metaData, BOX) : null;
+        RowMapper<IBNItemDraft> itemMapper = path.items ? IBNItemDraftProvider.MAPPER.compile(metaData, ITEM) : null;
+        RowMapper<IBNItemSizeDraft> sizeMapper = path.sizes ? IBNItemSizeDraftProvider.MAPPER.compile(metaData, SIZE) : null;
+
+        List<Node<IBNHeaderDraft, Node<IBNBoxDraft, Node<IBNItemDraft, IBNItemSizeDraft>>>> headersWithBoxes = new ArrayList<>();
+        List<Node<IBNHeaderDraft, Node<IBNItemDraft, IBNItemSizeDraft>>> headersWithItems = new ArrayList<>();
+        Node<IBNHeaderDraft, Node<IBNBoxDraft, Node<IBNItemDraft, IBNItemSizeDraft>>> headerWithBoxes = null;
+        Node<IBNHeaderDraft, Node<IBNItemDraft, IBNItemSizeDraft>> headerWithItems = null;
+        Node<IBNBoxDraft, Node<IBNItemDraft, IBNItemSizeDraft>> box = null;
+        Node<IBNItemDraft, IBNItemSizeDraft> item = null;
+        String headerId = null;
+        String boxId = null;
+        String itemId = null;
+
+        // the rows are ordered by header, box, item and size, so each node is complete once its key changes
+        while (resultSet.next()) {
+            String rowHeaderId = resultSet.getString(HEADER + "IBNID");
+            if (!rowHeaderId.equals(headerId)) {
+                headerId = rowHeaderId;
+                boxId = null;
+                itemId = null;
+                IBNHeaderDraft header = headerMapper.mapRow(resultSet);
+                if (path.boxes) {
+                    headerWithBoxes = new Node<>(header);
+                    headersWithBoxes.add(headerWithBoxes);
+                } else {
+                    headerWithItems = new Node<>(header);
+                    headersWithItems.add(headerWithItems);
+                }
+            }
+
+            if (path.boxes) {
+                String rowBoxId = resultSet.getString(BOX + "HANABOXID");
+                if (rowBoxId == null) {
+                    continue;
+                }
+                if (!rowBoxId.equals(boxId)) {
+                    boxId = rowBoxId;
+                    itemId = null;
+                    box = new Node<>(boxMapper.mapRow(resultSet));
+                    headerWithBoxes.children.add(box);
+                }
+            }
+
+            if (path.items) {
+                String rowItemId = resultSet.getString(ITEM + "ITEMID");
+                if (rowItemId == null) {
+                    continue;
+                }
+                if (!rowItemId.equals(itemId)) {
+                    itemId = rowItemId;
+                    item = new Node<>(itemMapper.mapRow(resultSet));
+                    (path.boxes ? box.children : headerWithItems.children).add(item);
+                }
+            }
+
+            if (path.sizes && resultSet.getString(SIZE + "SIZEID") != null) {
+                item.children.add(sizeMapper.mapRow(resultSet));
+            }
+        }
+
+        if (path.boxes) {
+            return headersWithBoxes.stream().map(header -> {
+                List<IBNBoxDraft> boxes = header.children.stream().map(boxNode -> {
+                    if (path.items) {
+                        boxNode.value.setItems(attachSizes(boxNode.children, path));
+                    }
+                    return boxNode.value;
+                }).collect(Collectors.toList());
+                header.value.setBoxes(boxes);
+                return header.value;
+            }).collect(Collectors.toList());
+        }
+        return headersWithItems.stream().map(header -> {
+            header.value.setItems(attachSizes(header.children, path));
+            return header.value;
+        }).collect(Collectors.toList());
+    }
+
+    private static List<IBNItemDraft> attachSizes(List<Node<IBNItemDraft, IBNItemSizeDraft>> items, ExpandPath path) {
+        return items.stream().map(itemNode -> {
+            if (path.sizes) {
+                itemNode.value.setSizes(itemNode.children);
+            }
+            return itemNode.value;
+        }).collect(Collectors.toList());
+    }
+
+    private static List<String> rootColumns(QueryRequest req) {
+        String[] projection = CdsQueryBuilder.projection(IBNHeaderDraftProvider.TABLE, req.getSelectProperties());
+        return "*".equals(projection[0]) ? allColumns(IBNHeaderDraftProvider.TABLE) : Arrays.asList(projection);
+    }
+
+    private static List<String> allColumns(DraftTable<?> table) {
+        return table.getColumns().stream().map(DraftTable.Column::getName).collect(Collectors.toList());
+    }
+
+    private static void addColumns(List<String> columns, String alias, String labelPrefix, List<String> names) {
+        for (String name : names) {
+            columns.add(alias + "." + name + " AS " + labelPrefix + name);
+        }
+    }
+
+    /**
+     * Expand path below the header, parsed from the OData form such as {@code Boxes/Items/Sizes}.
+     */
+    public static class ExpandPath {
+
+        private static final List<List<String>> SUPPORTED = Arrays.asList(
+                Collections.singletonList("ITEMS"),
+                Arrays.asList("ITEMS", "SIZES"),
+                Collections.singletonList("BOXES"),
+                Arrays.asList("BOXES", "ITEMS"),
+                Arrays.asList("BOXES", "ITEMS", "SIZES"));
+
+        private final boolean boxes;
+        private final boolean items;
+        private final boolean sizes;
+
+        private ExpandPath(List<String> segments) {
+            this.boxes = segments.contains("BOXES");
+            this.items = segments.contains("ITEMS");
+            this.sizes = segments.contains("SIZES");
+        }
+
+        public static ExpandPath parse(String expandPath) {
+            List<String> segments = Arrays.stream(expandPath.split("/"))
+                    .map(segment -> segment.trim().toUpperCase(Locale.ROOT))
+                    .collect(Collectors.toList());
+            if (!SUPPORTED.contains(segments)) {
+                throw new IllegalArgumentException("Unsupported expand path " + expandPath);
+            }
+            return new ExpandPath(segments);
+        }
+
+        public boolean includesBoxes() {
+            return boxes;
+        }
+    }
+
+    private static class Node<T, C> {
+
+        private final T value;
+        private final List<C> children = new ArrayList<>();
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.api.EntityData;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Maps rows straight into draft entities using the column layout of a {@link DraftTable}. Values are decoded by
+ * the column's {@link ColumnType}, so no intermediate map is built per row. Columns that are null or not part of
+ * the result get the column type's absent value.
+ */
+public class DraftMapper<T> {
+
+    private final String entityName;
+    private final Supplier<T> factory;
+    private final List<DraftTable.Column<T>> columns;
+
+    public DraftMapper(DraftTable<T> table, Supplier<T> factory) {
+        this.entityName = table.getEntityName();
+        this.factory = factory;
+        this.columns = table.getColumns();
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public T fromEntityData(EntityData entityData) {
+        T entity = factory.get();
+        for (DraftTable.Column<T> column : columns) {
+            assign(entity, column, column.getType().decode(entityData.getElementValue(column.getName())));
+        }
+        return entity;
+    }
+
+    /**
+     * Resolves the column positions of a result shape once and returns a mapper that reads by index.
+     */
+    public RowMapper<T> compile(ResultSetMetaData metaData) throws SQLException {
+        return compile(metaData, "");
+    }
+
+    /**
+     * Same as {@link #compile(ResultSetMetaData)} for a result whose column labels carry a prefix, as in joins
+     * where several tables share column names.
+     */
+    public RowMapper<T> compile(ResultSetMetaData metaData, String labelPrefix) throws SQLException {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            positions.putIfAbsent(metaData.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+        }
+
+        List<DraftTable.Column<T>> present = new ArrayList<>();
+        List<DraftTable.Column<T>> absent = new ArrayList<>();
+        int[] indices = new int[columns.size()];
+        for (DraftTable.Column<T> column : columns) {
+            Integer position = positions.get(labelPrefix + column.getName());
+            if (position == null) {
+                absent.add(column);
+            } else {
+                indices[present.size()] = position;
+                present.add(column);
+            }
+        }
+
+        return resultSet -> {
+            T entity = factory.get();
+            for (int i = 0; i < present.size(); i++) {
+                DraftTable.Column<T> column = present.get(i);
+                assign(entity, column, column.getType().read(resultSet, indices[i]));
+            }
+            for (DraftTable.Column<T> column : absent) {
+                assign(entity, column, null);
+            }
+            return entity;
+        };
+    }
+
+    private void assign(T entity, DraftTable.Column<T> column, Object value) {
+        column.assign(entity, value == null ? column.getType().absentValue() : value);
+    }
+}
@@ -0,0 +1,53 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
+
+/**
+ * The draft providers the service should obtain. Each one reads single drafts through a {@link CachingProvider} and
+ * is wrapped in an {@link InstrumentedProvider} so that its calls, cached or not, show up in {@link ProviderMetrics}.
+ * The providers wrap the child providers they call themselves only for metrics, so tree reads always see the tables.
+ */
+public class DraftProviders {
+
+    private DraftProviders() {
+    }
+
+    public static Provider<IBNHeaderDraft> headers() {
+        return HeadersHolder.INSTANCE;
+    }
+
+    public static Provider<IBNBoxDraft> boxes() {
+        return BoxesHolder.INSTANCE;
+    }
+
+    public static Provider<IBNItemDraft> items() {
+        return ItemsHolder.INSTANCE;
+    }
+
+    public static Provider<IBNItemSizeDraft> itemSizes() {
+        return ItemSizesHolder.INSTANCE;
+    }
+
+    private static class HeadersHolder {
+        private static final Provider<IBNHeaderDraft> INSTANCE = new InstrumentedProvider<>(
+                new CachingProvider<>(new IBNHeaderDraftProvider(), IBNHeaderDraft::getIbnId), IBNHeaderDraftProvider.TABLE);
+    }
+
+    private static class BoxesHolder {
+        private static final Provider<IBNBoxDraft> INSTANCE = new InstrumentedProvider<>(
+                new CachingProvider<>(new IBNBoxDraftProvider(), IBNBoxDraft::getIbnId), IBNBoxDraftProvider.TABLE);
+    }
+
+    private static class ItemsHolder {
+        private static final Provider<IBNItemDraft> INSTANCE = new InstrumentedProvider<>(
+                new CachingProvider<>(new IBNItemDraftProvider(), IBNItemDraft::getIbnId), IBNItemDraftProvider.TABLE);
+    }
+
+    private static class ItemSizesHolder {
+        private static final Provider<IBNItemSizeDraft> INSTANCE = new InstrumentedProvider<>(
+                new CachingProvider<>(new IBNItemSizeDraftProvider(), IBNItemSizeDraft::getIbnId), IBNItemSizeDraftProvider.TABLE);
+    }
+}
@@ -0,0 +1,106 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Column layout of a draft table, used wherever the providers talk to HANA through plain JDBC instead of CDS.
+ */
+public class DraftTable<T> {
+
+    private final String entityName;
+    private final String tableName;
+    private final String keyColumn;
+    private final Map<String, Column<T>> columnsByName = new LinkedHashMap<>();
+    private final List<Column<T>> columns = new ArrayList<>();
+    private final Set<String> notNullColumns = new HashSet<>();
+
+    public DraftTable(String entityName, String keyColumn) {
+        this.entityName = entityName;
+        this.tableName = entityName.replace('.', '_').toUpperCase(Locale.ROOT);
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * Adds a column. The value type of the getter and setter must be the one {@link ColumnType} decodes to.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> DraftTable<T> column(String name, ColumnType type, Function<T, V> getter, BiConsumer<T, V> setter) {
+        Column<T> column = new Column<>(name, type, getter::apply, (entity, value) -> setter.accept(entity, (V) value));
+        columnsByName.put(name, column);
+        columns.add(column);
+        return this;
+    }
+
+    /**
+     * Marks columns that the schema declares NOT NULL and the providers always fill. The key column is implied.
+     */
+    public DraftTable<T> notNull(String... names) {
+        notNullColumns.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public List<Column<T>> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    public Column<T> getColumn(String name) {
+        return columnsByName.get(name.toUpperCase(Locale.ROOT));
+    }
+
+    public boolean isNotNull(String name) {
+        return keyColumn.equals(name) || notNullColumns.contains(name);
+    }
+
+    public static class Column<T> {
+
+        private final String name;
+        private final ColumnType type;
+        private final Function<T, Object> getter;
+        private final BiConsumer<T, Object> setter;
+
+        Column(String name, ColumnType type, Function<T, Object> getter, BiConsumer<T, Object> setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ColumnType getType() {
+            return type;
+        }
+
+        public Object valueOf(T entity) {
+            return getter.apply(entity);
+        }
+
+        public void assign(T entity, Object value) {
+            setter.accept(entity, value);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes whole draft trees by IBNID. The IBNs are processed in chunks; every chunk removes sizes, items, boxes
+ * and headers with one {@code IN} delete per table inside its own transaction. A failing chunk is rolled back
+ * and reported, the remaining chunks still run.
+ */
+public class DraftTreeDeleter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DraftTreeDeleter.class);
+    private static final String ENTITY_NAMESPACE = "pptl.odata.ibn.manage.db";
+    private static final String IBN_KEY_NAME = "IBNID";
+    private static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("hdi.delete.chunkSize", 500);
+
+    private static final List<DraftTable<?>> TABLES_CHILDREN_FIRST = Arrays.<DraftTable<?>>asList(
+            IBNItemSizeDraftProvider.TABLE,
+            IBNItemDraftProvider.TABLE,
+            IBNBoxDraftProvider.TABLE,
+            IBNHeaderDraftProvider.TABLE);
+
+    private final int chunkSize;
+
+    public DraftTreeDeleter() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public DraftTreeDeleter(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public TreeDeleteResult deleteTrees(Collection<String> ibnIds) {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ibnIds));
+        TreeDeleteResult result = new TreeDeleteResult();
+
+        for (int offset = 0; offset < distinctIds.size(); offset += chunkSize) {
+            List<String> chunk = distinctIds.subList(offset, Math.min(offset + chunkSize, distinctIds.size()));
+            try {
+                result.recordChunk(deleteChunk(chunk));
+                chunk.forEach(DraftCacheInvalidator.getInstance()::invalidate);
+            } catch (SQLException e) {
+                LOG.warn("Rolled back deletion of {} draft trees", chunk.size(), e);
+                result.recordFailure(chunk, e);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Integer> deleteChunk(List<String> ibnIds) throws SQLException {
+        try (HdiSession session = DataSourceManager.getInstance().openSession(ENTITY_NAMESPACE)) {
+            Connection connection = session.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                Map<String, Integer> deletedRows = new LinkedHashMap<>();
+                for (DraftTable<?> table : TABLES_CHILDREN_FIRST) {
+                    SqlQuery delete = SqlQueryBuilder.buildDeleteInQuery(table, IBN_KEY_NAME, ibnIds);
+                    try (PreparedStatement statement = connection.prepareStatement(delete.getSql())) {
+                        delete.bind(statement);
+                        deletedRows.put(table.getTableName(), statement.executeUpdate());
+                    }
+                }
+                connection.commit();
+                return deletedRows;
+
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Loads draft trees level by level: every level is read with a single query keyed on IBNID and the
+ * graph is stitched together in memory, so the number of round trips does not depend on the draft size.
+ * Since every level is keyed on IBNID alone, the levels are read concurrently.
+ */
+public class DraftTreeLoader {
+
+    private static final String IBN_KEY_NAME = "IBNID";
+
+    private final Provider<IBNItemDraft> itemDraftProvider;
+    private final Provider<IBNItemSizeDraft> itemSizeDraftProvider;
+    private final Executor executor;
+
+    public DraftTreeLoader(Provider<IBNItemDraft> itemDraftProvider, Provider<IBNItemSizeDraft> itemSizeDraftProvider) {
+        this(itemDraftProvider, itemSizeDraftProvider, HdiExecutors.queryExecutor());
+    }
+
+    public DraftTreeLoader(Provider<IBNItemDraft> itemDraftProvider, Provider<IBNItemSizeDraft> itemSizeDraftProvider, Executor executor) {
+        this.itemDraftProvider = itemDraftProvider;
+        this.itemSizeDraftProvider = itemSizeDraftProvider;
+        this.executor = executor;
+    }
+
+    public List<IBNItemDraft> loadItems(String ibnId) {
+        return join(loadItemsAsync(ibnId));
+    }
+
+    /**
+     * Loads the items matching the condition together with the sizes matching it. The condition may only use
+     * columns the size table shares with the item table, such as IBNID and HANABOXID.
+     */
+    public List<IBNItemDraft> loadItems(ConditionBuilder.Condition condition) {
+        return join(loadItemsAsync(condition));
+    }
+
+    public CompletableFuture<List<IBNItemDraft>> loadItemsAsync(String ibnId) {
+        return loadItemsAsync(byIbnId(ibnId));
+    }
+
+    /**
+     * Starts the item and the size query at the same time. Callers can run the query for the parent level
+     * meanwhile and join afterwards.
+     */
+    public CompletableFuture<List<IBNItemDraft>> loadItemsAsync(ConditionBuilder.Condition condition) {
+        CompletableFuture<List<IBNItemDraft>> items = InstrumentedExecutor.supplyAsync(() -> itemDraftProvider.query(condition), executor);
+        CompletableFuture<List<IBNItemSizeDraft>> sizes = InstrumentedExecutor.supplyAsync(() -> itemSizeDraftProvider.query(condition), executor);
+
+        return items.thenCombine(sizes, (itemDrafts, sizeDrafts) -> {
+            attachSizes(itemDrafts, sizeDrafts);
+            return itemDrafts;
+        });
+    }
+
+    public static List<IBNBoxDraft> attachItems(List<IBNBoxDraft> boxes, List<IBNItemDraft> items) {
+        Map<String, List<IBNItemDraft>> itemsByBox = items
+                .stream()
+                .collect(Collectors.groupingBy(IBNItemDraft::getHanaBoxId));
+
+        for (IBNBoxDraft box : boxes) {
+            box.setItems(itemsByBox.getOrDefault(box.getHanaBoxId().toString(), new ArrayList<>()));
+        }
+        return boxes;
+    }
+
+    public static void attachSizes(List<IBNItemDraft> items, List<IBNItemSizeDraft> sizes) {
+        Map<UUID, List<IBNItemSizeDraft>> sizesByItem = sizes
+                .stream()
+                .collect(Collectors.groupingBy(IBNItemSizeDraft::getItemId));
+
+        for (IBNItemDraft item : items) {
+            item.setSizes(sizesByItem.getOrDefault(item.getItemId(), new ArrayList<>()));
+        }
+    }
+
+    /**
+     * Waits for a level and rethrows its failure as it was thrown by the provider.
+     */
+    public static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static ConditionBuilder.Condition byIbnId(String ibnId) {
+        return new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(ibnId);
+    }
+}
@@ -0,0 +1,260 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNHeaderDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
+import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects new, changed and removed drafts of all four levels and writes them in one transaction. Deletes run
+ * children first and inserts parents first, each level as one JDBC batch, followed by the updates. Either every
+ * change is committed or none is.
+ * <p>
+ * A unit of work is meant for a single request and is not thread-safe.
+ */
+public class DraftUnitOfWork {
+
+    private static final String ENTITY_NAMESPACE = "pptl.odata.ibn.manage.db";
+    private static final String IBN_KEY_NAME = "IBNID";
+    private static final String FLUSH_EXCEPTION_MESSAGE = "Error flushing draft unit of work";
+
+    private final Changes<IBNHeaderDraft> headers = new Changes<>(IBNHeaderDraftProvider.TABLE);
+    private final Changes<IBNBoxDraft> boxes = new Changes<>(IBNBoxDraftProvider.TABLE);
+    private final Changes<IBNItemDraft> items = new Changes<>(IBNItemDraftProvider.TABLE);
+    private final Changes<IBNItemSizeDraft> sizes = new Changes<>(IBNItemSizeDraftProvider.TABLE);
+    private final BatchWriter batchWriter;
+
+    public DraftUnitOfWork() {
+        this(new BatchWriter());
+    }
+
+    public DraftUnitOfWork(BatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Registers a new header. Its IBNID, status and creation time are assigned right away, so the children
+     * registered afterwards can reference it.
+     */
+    public DraftUnitOfWork registerNew(IBNHeaderDraft header) {
+        IBNHeaderDraftProvider.prepareForInsert(header);
+        headers.registerNew(header);
+        return this;
+    }
+
+    public DraftUnitOfWork registerNew(IBNBoxDraft box) {
+        boxes.registerNew(box);
+        return this;
+    }
+
+    public DraftUnitOfWork registerNew(IBNItemDraft item) {
+        items.registerNew(item);
+        return this;
+    }
+
+    public DraftUnitOfWork registerNew(IBNItemSizeDraft size) {
+        sizes.registerNew(size);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDirty(IBNHeaderDraft header) {
+        headers.registerDirty(header);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDirty(IBNBoxDraft box) {
+        boxes.registerDirty(box);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDirty(IBNItemDraft item) {
+        items.registerDirty(item);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDirty(IBNItemSizeDraft size) {
+        sizes.registerDirty(size);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDeleted(IBNHeaderDraft header) {
+        headers.registerDeleted(header);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDeleted(IBNBoxDraft box) {
+        boxes.registerDeleted(box);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDeleted(IBNItemDraft item) {
+        items.registerDeleted(item);
+        return this;
+    }
+
+    public DraftUnitOfWork registerDeleted(IBNItemSizeDraft size) {
+        sizes.registerDeleted(size);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return headers.isEmpty() && boxes.isEmpty() && items.isEmpty() && sizes.isEmpty();
+    }
+
+    /**
+     * Writes all registered changes with a single commit and returns the number of affected rows. On failure
+     * the transaction is rolled back, nothing is written and the registrations are kept.
+     */
+    public int flush() {
+        if (isEmpty()) {
+            return 0;
+        }
+
+        try (HdiSession session = DataSourceManager.getInstance().openSession(ENTITY_NAMESPACE)) {
+            Connection connection = session.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                int affectedRows = sizes.delete(connection)
+                        + items.delete(connection)
+                        + boxes.delete(connection)
+                        + headers.delete(connection)
+                        + headers.insert(connection)
+                        + boxes.insert(connection)
+                        + items.insert(connection)
+                        + sizes.insert(connection)
+                        + headers.update(connection)
+                        + boxes.update(connection)
+                        + items.update(connection)
+                        + sizes.update(connection);
+                connection.commit();
+
+                Set<String> changedIbnIds = new LinkedHashSet<>();
+                headers.collectIbnIds(changedIbnIds);
+                boxes.collectIbnIds(changedIbnIds);
+                items.collectIbnIds(changedIbnIds);
+                sizes.collectIbnIds(changedIbnIds);
+                clear();
+                changedIbnIds.forEach(DraftCacheInvalidator.getInstance()::invalidate);
+                return affectedRows;
+
+            } catch (SQLException e) {
+                rollbackQuietly(connection);
+                throw new DraftProviderException(FLUSH_EXCEPTION_MESSAGE, e);
+            } catch (RuntimeException e) {
+                rollbackQuietly(connection);
+                throw e;
+            }
+        }
+    }
+
+    public void clear() {
+        headers.clear();
+        boxes.clear();
+        items.clear();
+        sizes.clear();
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // the pool resets or discards the connection when it is returned
+        }
+    }
+
+    private class Changes<T> {
+
+        private final DraftTable<T> table;
+        private final Map<T, Boolean> registered = new IdentityHashMap<>();
+        private final List<T> newEntities = new ArrayList<>();
+        private final List<T> dirtyEntities = new ArrayList<>();
+        private final List<T> deletedEntities = new ArrayList<>();
+
+        Changes(DraftTable<T> table) {
+            this.table = table;
+        }
+
+        void registerNew(T entity) {
+            if (registered.put(entity, Boolean.TRUE) == null) {
+                newEntities.add(entity);
+            }
+        }
+
+        void registerDirty(T entity) {
+            // new entities are inserted with their latest state anyway
+            if (registered.put(entity, Boolean.TRUE) == null) {
+                dirtyEntities.add(entity);
+            }
+        }
+
+        void registerDeleted(T entity) {
+            if (newEntities.removeIf(candidate -> candidate == entity)) {
+                // never written, so there is nothing to delete
+                registered.remove(entity);
+                return;
+            }
+            dirtyEntities.removeIf(candidate -> candidate == entity);
+            registered.put(entity, Boolean.TRUE);
+            deletedEntities.add(entity);
+        }
+
+        boolean isEmpty() {
+            return newEntities.isEmpty() && dirtyEntities.isEmpty() && deletedEntities.isEmpty();
+        }
+
+        int delete(Connection connection) throws SQLException {
+            if (deletedEntities.isEmpty()) {
+                return 0;
+            }
+            DraftTable.Column<T> keyColumn = table.getColumn(table.getKeyColumn());
+            List<String> keys = deletedEntities.stream()
+                    .map(entity -> keyColumn.valueOf(entity).toString())
+                    .collect(Collectors.toList());
+            return check(batchWriter.deleteAll(connection, table, keyColumn.getName(), keys));
+        }
+
+        int insert(Connection connection) throws SQLException {
+            return newEntities.isEmpty() ? 0 : check(batchWriter.insertAll(connection, table, newEntities));
+        }
+
+        int update(Connection connection) throws SQLException {
+            return dirtyEntities.isEmpty() ? 0 : check(batchWriter.updateAll(connection, table, dirtyEntities));
+        }
+
+        void collectIbnIds(Set<String> ibnIds) {
+            DraftTable.Column<T> ibnIdColumn = table.getColumn(IBN_KEY_NAME);
+            Stream.of(newEntities, dirtyEntities, deletedEntities)
+                    .flatMap(List::stream)
+                    .map(ibnIdColumn::valueOf)
+                    .filter(Objects::nonNull)
+                    .forEach(ibnId -> ibnIds.add(ibnId.toString()));
+        }
+
+        void clear() {
+            registered.clear();
+            newEntities.clear();
+            dirtyEntities.clear();
+            deletedEntities.clear();
+        }
+
+        private int check(BatchResult result) throws SQLException {
+            if (result.hasFailures()) {
+                throw result.getError();
+            }
+            return result.getTotalAffectedRows();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+public class ExecutorStats {
+
+    private final String name;
+    private final int poolSize;
+    private final int active;
+    private final int queued;
+    private final long submitted;
+    private final long completed;
+    private final long failed;
+    private final long callerRuns;
+    private final double averageQueueWaitMillis;
+    private final double maxQueueWaitMillis;
+
+    ExecutorStats(String name, int poolSize, int active, int queued, long submitted, long completed, long failed,
+                  long callerRuns, double averageQueueWaitMillis, double maxQueueWaitMillis) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.active = active;
+        this.queued = queued;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.failed = failed;
+        this.callerRuns = callerRuns;
+        this.averageQueueWaitMillis = averageQueueWaitMillis;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Tasks that ran, successfully or not.
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Tasks that threw or whose future completed exceptionally; included in {@link #getCompleted()}.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Tasks that found the queue full and were run on the submitting thread instead.
+     */
+    public long getCallerRuns() {
+        return callerRuns;
+    }
+
+    public double getAverageQueueWaitMillis() {
+        return averageQueueWaitMillis;
+    }
+
+    public double getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorStats{name=" + name + ", poolSize=" + poolSize + ", active=" + active + ", queued=" + queued
+                + ", submitted=" + submitted + ", completed=" + completed + ", failed=" + failed
+                + ", callerRuns=" + callerRuns + ", averageQueueWaitMillis=" + averageQueueWaitMillis
+                + ", maxQueueWaitMillis=" + maxQueueWaitMillis + '}';
+    }
+}
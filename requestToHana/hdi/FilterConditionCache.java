@@ -0,0 +1,177 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.helpers.ExpressionParser;
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.filter.BinaryExpressionNode;
+import com.sap.cloud.sdk.service.prov.api.filter.Expression;
+import com.sap.cloud.sdk.service.prov.api.filter.LiteralNode;
+import com.sap.cloud.sdk.service.prov.api.filter.PropertyNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns $filter expressions into CDS conditions through compiled templates. A template is compiled once per
+ * expression shape, that is the expression with its literals replaced by bind slots, and is bound to the literals
+ * of each call, so equal filters with other values share one template across requests.
+ * <p>
+ * Templates cover equality comparisons of a property with a literal, combined with {@code and} and {@code or}. Each
+ * comparison is built by {@link ExpressionParser#buildCondition(Map)}, which maps the property to its column and the
+ * literal to its value the same way the key lookups do. Other expressions are parsed by
+ * {@link ExpressionParser#parseAsCondition(Expression)} on every call. At most {@code hdi.filterCache.maxSize}
+ * templates are kept, least recently used first out.
+ */
+public class FilterConditionCache {
+
+    private static final int DEFAULT_MAX_SIZE = Integer.getInteger("hdi.filterCache.maxSize", 500);
+    private static final String EQ = "EQ";
+    private static final String AND = "AND";
+    private static final String OR = "OR";
+
+    private final int maxSize;
+    private final Map<String, ConditionTemplate> templates;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public static FilterConditionCache getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    FilterConditionCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.templates = new LinkedHashMap<String, ConditionTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ConditionTemplate> eldest) {
+                if (size() <= FilterConditionCache.this.maxSize) {
+                    return false;
+                }
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    private static class InstanceHolder {
+        private static final FilterConditionCache INSTANCE = new FilterConditionCache(DEFAULT_MAX_SIZE);
+    }
+
+    public ConditionBuilder.Condition parse(Expression filterExpression) {
+        StringBuilder shape = new StringBuilder();
+        List<Object> values = new ArrayList<>();
+        if (filterExpression == null || !describe(filterExpression, shape, values)) {
+            fallbacks.incrementAndGet();
+            return ExpressionParser.parseAsCondition(filterExpression);
+        }
+
+        String key = shape.toString();
+        ConditionTemplate template;
+        synchronized (templates) {
+            template = templates.get(key);
+        }
+        if (template != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            // compiled outside the lock; two threads racing on one shape both compile it, which is harmless
+            template = compile(filterExpression, new int[1]);
+            synchronized (templates) {
+                templates.put(key, template);
+            }
+        }
+        return template.bind(values);
+    }
+
+    public CacheStats getStats() {
+        synchronized (templates) {
+            return new CacheStats(templates.size(), hits.get(), misses.get(), evictions.get(), 0);
+        }
+    }
+
+    /**
+     * Expressions without a template, which {@link ExpressionParser} parsed in full.
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    /**
+     * Appends the shape of a supported expression to {@code shape} and its literals to {@code values}. Returns
+     * {@code false} if the expression has no template.
+     */
+    private static boolean describe(Expression node, StringBuilder shape, List<Object> values) {
+        if (!(node instanceof BinaryExpressionNode)) {
+            return false;
+        }
+        BinaryExpressionNode binary = (BinaryExpressionNode) node;
+        String operator = operatorOf(binary);
+        if (AND.equals(operator) || OR.equals(operator)) {
+            shape.append('(');
+            if (!describe(binary.getFirstChild(), shape, values)) {
+                return false;
+            }
+            shape.append(' ').append(operator).append(' ');
+            if (!describe(binary.getSecondChild(), shape, values)) {
+                return false;
+            }
+            shape.append(')');
+            return true;
+        }
+        if (!EQ.equals(operator)
+                || !(binary.getFirstChild() instanceof PropertyNode)
+                || !(binary.getSecondChild() instanceof LiteralNode)) {
+            return false;
+        }
+        Object value = ((LiteralNode) binary.getSecondChild()).getValue();
+        if (value == null) {
+            // eq null is left to the parser
+            return false;
+        }
+        shape.append(((PropertyNode) binary.getFirstChild()).getPath()).append(" EQ ?");
+        values.add(value);
+        return true;
+    }
+
+    /**
+     * Compiles an expression that {@link #describe} accepted. Bind slots are numbered in the order in which
+     * {@code describe} collects the literals.
+     */
+    private static ConditionTemplate compile(Expression node, int[] nextSlot) {
+        BinaryExpressionNode binary = (BinaryExpressionNode) node;
+        String operator = operatorOf(binary);
+        if (AND.equals(operator) || OR.equals(operator)) {
+            ConditionTemplate left = compile(binary.getFirstChild(), nextSlot);
+            ConditionTemplate right = compile(binary.getSecondChild(), nextSlot);
+            return AND.equals(operator)
+                    ? values -> left.bind(values).AND(right.bind(values))
+                    : values -> left.bind(values).OR(right.bind(values));
+        }
+        String property = ((PropertyNode) binary.getFirstChild()).getPath();
+        int slot = nextSlot[0]++;
+        return values -> ExpressionParser.buildCondition(Collections.singletonMap(property, values.get(slot)));
+    }
+
+    private static String operatorOf(BinaryExpressionNode node) {
+        return String.valueOf(node.getOperator()).toUpperCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    private interface ConditionTemplate {
+        ConditionBuilder.Condition bind(List<Object> values);
+    }
+}
@@ -0,0 +1,52 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared threads for draft reads. The query pool runs the parallel halves of a single provider call, such as the
+ * count of a page or the sibling levels of a tree; its tasks never wait on other tasks. The I/O pool runs whole
+ * provider calls for {@link AsyncProvider}. Together they should stay within the connection pool size. Both are
+ * bounded {@link InstrumentedExecutor}s, so their tasks count against the request's {@link RequestQueryCounter} scope.
+ */
+public class HdiExecutors {
+
+    private static final int QUERY_THREADS = Integer.getInteger("hdi.executor.queryThreads", 4);
+    private static final int QUERY_QUEUE_CAPACITY = Integer.getInteger("hdi.executor.queryQueueCapacity", 256);
+    private static final int IO_THREADS = Integer.getInteger("hdi.executor.ioThreads", 6);
+    private static final int IO_QUEUE_CAPACITY = Integer.getInteger("hdi.executor.ioQueueCapacity", 256);
+
+    private HdiExecutors() {
+    }
+
+    public static InstrumentedExecutor queryExecutor() {
+        return QueryExecutorHolder.INSTANCE;
+    }
+
+    private static class QueryExecutorHolder {
+        private static final InstrumentedExecutor INSTANCE = new InstrumentedExecutor("hdi-query", QUERY_THREADS, QUERY_QUEUE_CAPACITY);
+    }
+
+    public static InstrumentedExecutor ioExecutor() {
+        return IoExecutorHolder.INSTANCE;
+    }
+
+    private static class IoExecutorHolder {
+        private static final InstrumentedExecutor INSTANCE = new InstrumentedExecutor("hdi-io", IO_THREADS, IO_QUEUE_CAPACITY);
+    }
+
+    static ThreadPoolExecutor newDaemonPool(String name, int threads, BlockingQueue<Runnable> queue) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
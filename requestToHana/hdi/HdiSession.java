@@ -0,0 +1,46 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.rt.cds.CDSHandler;
+
+import java.sql.Connection;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Closing the session hands the connection back to the pool,
+ * so it must always be used in a try-with-resources block.
+ */
+public class HdiSession implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final PooledConnection pooledConnection;
+    private boolean broken;
+    private boolean closed;
+
+    HdiSession(ConnectionPool pool, PooledConnection pooledConnection) {
+        this.pool = pool;
+        this.pooledConnection = pooledConnection;
+    }
+
+    public CDSHandler getCDSHandler() {
+        return pooledConnection.getHandler();
+    }
+
+    public Connection getConnection() {
+        return pooledConnection.getConnection();
+    }
+
+    /**
+     * Makes the pool discard the physical connection instead of reusing it once the session is closed.
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.release(pooledConnection, broken);
+    }
+}
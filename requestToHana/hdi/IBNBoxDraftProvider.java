@@ -1,7 +1,6 @@
 package com.burberry.pptl.odata.ibn.manage.hdi;
 
 import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
-import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNBoxDraft;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
@@ -12,9 +11,10 @@ import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
 import com.sap.cloud.sdk.service.prov.api.EntityData;
 import com.sap.cloud.sdk.service.prov.api.filter.Expression;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
 
@@ -25,12 +25,34 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
     private static final String COUNT_PROPERTY_NAME = "COUNT(HANABOXID)";
     private static final String CDS_EXCEPTION_MESSAGE = "Error executing CDS query";
     private static final int SINGLE_ENTRY_INDEX = 0;
+    static final DraftTable<IBNBoxDraft> TABLE = new DraftTable<IBNBoxDraft>(ENTITY_NAME, HANA_BOX_KEY_NAME)
+            .column("HANABOXID", ColumnType.UUID, IBNBoxDraft::getHanaBoxId, IBNBoxDraft::setHanaBoxId)
+            .column("IBNID", ColumnType.UUID, IBNBoxDraft::getIbnId, IBNBoxDraft::setIbnId)
+            .column("BOXID", ColumnType.STRING, IBNBoxDraft::getBoxId, IBNBoxDraft::setBoxId)
+            .column("IBNNUMBER", ColumnType.STRING, IBNBoxDraft::getIBNNumber, IBNBoxDraft::setIBNNumber)
+            .column("BOXREF", ColumnType.STRING, IBNBoxDraft::getBoxRef, IBNBoxDraft::setBoxRef)
+            .column("VOLUME", ColumnType.DECIMAL, IBNBoxDraft::getVolume, IBNBoxDraft::setVolume)
+            .column("GROSSWEIGHT", ColumnType.DECIMAL, IBNBoxDraft::getGrossWeight, IBNBoxDraft::setGrossWeight)
+            .column("NETWEIGHT", ColumnType.DECIMAL, IBNBoxDraft::getNetWeight, IBNBoxDraft::setNetWeight)
+            .column("SIZEH", ColumnType.DECIMAL, IBNBoxDraft::getSizeH, IBNBoxDraft::setSizeH)
+            .column("SIZEW", ColumnType.DECIMAL, IBNBoxDraft::getSizeW, IBNBoxDraft::setSizeW)
+            .column("SIZEL", ColumnType.DECIMAL, IBNBoxDraft::getSizeL, IBNBoxDraft::setSizeL)
+            .column("TOTALS", ColumnType.DECIMAL, IBNBoxDraft::getTotals, IBNBoxDraft::setTotals)
+            .column("CURRENCY", ColumnType.STRING, IBNBoxDraft::getCurrency, IBNBoxDraft::setCurrency)
+            .column("QUANTITY", ColumnType.DECIMAL, IBNBoxDraft::getQuantity, IBNBoxDraft::setQuantity)
+            .notNull("IBNID");
+    static final DraftMapper<IBNBoxDraft> MAPPER = new DraftMapper<>(TABLE, IBNBoxDraft::new);
     private IBNItemDraftProvider itemDraftProvider = new IBNItemDraftProvider();
+    private BatchWriter batchWriter = new BatchWriter();
+    private DraftTreeLoader treeLoader = new DraftTreeLoader(new InstrumentedProvider<>(itemDraftProvider, IBNItemDraftProvider.TABLE),
+            new InstrumentedProvider<>(new IBNItemSizeDraftProvider(), IBNItemSizeDraftProvider.TABLE));
 
     @Override
     public IBNBoxDraft save(IBNBoxDraft header) {
         try {
-            return DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeInsert(header, ENTITY_NAME, true);
+            IBNBoxDraft saved = DataSourceManager.getInstance().execute(ENTITY_NAMESPACE, handler -> handler.executeInsert(header, ENTITY_NAME, true));
+            DraftCacheInvalidator.getInstance().invalidate(header.getIbnId());
+            return saved;
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -41,7 +63,8 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
         try {
             Map<String, Object> keys = new HashMap<>();
             keys.put(IBN_KEY_NAME, key);
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeDelete(ENTITY_NAME, keys);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeDelete(ENTITY_NAME, keys));
+            DraftCacheInvalidator.getInstance().invalidate(key);
 
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
@@ -55,7 +78,8 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
             keys.put(HANA_BOX_KEY_NAME, itemDraft.getHanaBoxId());
             EntityData data = EntityData.createFrom(itemDraft, ENTITY_NAME);
 
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeUpdate(data, keys, true);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeUpdate(data, keys, true));
+            DraftCacheInvalidator.getInstance().invalidate(itemDraft.getIbnId());
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -67,7 +91,7 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(HANA_BOX_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
                 return Optional.empty();
@@ -76,7 +100,7 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
             return Optional.of(selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX));
 
@@ -92,7 +116,7 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(HANA_BOX_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
                 return Optional.empty();
@@ -101,7 +125,7 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
             IBNBoxDraft boxDraft = selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX);
 
@@ -121,12 +145,12 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
     public List<IBNBoxDraft> query(ConditionBuilder.Condition condition) {
         try {
             CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME, condition);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -138,7 +162,7 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
     public Integer getInlineCount() {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountQuery(ENTITY_NAME, HANA_BOX_KEY_NAME);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -151,7 +175,7 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
     public Integer getInlineCountFiltered(Expression filterExpression) {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountFilteredQuery(ENTITY_NAME, HANA_BOX_KEY_NAME, filterExpression);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -164,12 +188,12 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
     public List<IBNBoxDraft> getAll(QueryRequest req) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -181,13 +205,13 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
     public List<IBNBoxDraft> getAllFiltered(QueryRequest req) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -195,49 +219,71 @@ public class IBNBoxDraftProvider implements Provider<IBNBoxDraft> {
         }
     }
 
+    @Override
+    public KeysetPage<IBNBoxDraft> getPage(QueryRequest req, String continuationToken) {
+        try {
+
+            KeysetQuery<IBNBoxDraft> keysetQuery = CdsQueryBuilder.buildKeysetQuery(TABLE, req, continuationToken);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, keysetQuery.getQuery());
+            return keysetQuery.toPage(selectResult
+                    .getResult()
+                    .stream()
+                    .map(MAPPER::fromEntityData)
+                    .collect(Collectors.toList()));
+
+        } catch (CDSException e) {
+            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
+        }
+    }
+
+    @Override
+    public PageResult<IBNBoxDraft> getAllWithCount(QueryRequest req) {
+        return PageQuery.execute(ENTITY_NAMESPACE, TABLE, req, MAPPER::fromEntityData);
+    }
+
     @Override
     public List<IBNBoxDraft> getAllFetchedByKey(String ibnId) {
         try {
 
+            CompletableFuture<List<IBNItemDraft>> items = treeLoader.loadItemsAsync(ibnId);
             CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME, new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(ibnId));
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
-            List<IBNBoxDraft> itemDrafts = selectResult
+            List<IBNBoxDraft> boxDrafts = selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
-            for (IBNBoxDraft boxDraft : itemDrafts) {
-                List<IBNItemDraft> itemSizes = itemDraftProvider.getAllFetchedByKeysForBoxes(boxDraft.getIbnId().toString(), boxDraft.getHanaBoxId().toString());
-                boxDraft.setItems(itemSizes);
-            }
-
-            return itemDrafts;
+            return DraftTreeLoader.attachItems(boxDrafts, DraftTreeLoader.join(items));
 
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
     }
 
-    private IBNBoxDraft populate(Map<String, Object> entityProperties) {
-        IBNBoxDraft boxDraft = new IBNBoxDraft();
-
-        boxDraft.setHanaBoxId(UUID.fromString(entityProperties.get("HANABOXID").toString()));
-        boxDraft.setIbnId(UUID.fromString(entityProperties.get("IBNID").toString()));
-        boxDraft.setBoxId(entityProperties.computeIfAbsent("BOXID", key -> Constants.NO_VALUE_STRING).toString());
-        boxDraft.setIBNNumber(entityProperties.computeIfAbsent("IBNNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-        boxDraft.setBoxRef(entityProperties.computeIfAbsent("BOXREF", key -> Constants.NO_VALUE_STRING).toString());
-        boxDraft.setVolume((BigDecimal) entityProperties.computeIfPresent("VOLUME", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setGrossWeight((BigDecimal) entityProperties.computeIfPresent("GROSSWEIGHT", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setNetWeight((BigDecimal) entityProperties.computeIfPresent("NETWEIGHT", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setSizeH((BigDecimal) entityProperties.computeIfPresent("SIZEH", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setSizeW((BigDecimal) entityProperties.computeIfPresent("SIZEW", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setSizeL((BigDecimal) entityProperties.computeIfPresent("SIZEL", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setTotals((BigDecimal) entityProperties.computeIfPresent("TOTALS", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        boxDraft.setCurrency(entityProperties.computeIfAbsent("CURRENCY", key -> Constants.NO_VALUE_STRING).toString());
-        boxDraft.setQuantity((BigDecimal) entityProperties.computeIfPresent("QUANTITY", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-
-        return boxDraft;
+    @Override
+    public BatchResult saveAll(List<IBNBoxDraft> drafts) {
+        return batchWriter.insertAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
+
+    @Override
+    public BatchResult updateAll(List<IBNBoxDraft> drafts) {
+        return batchWriter.updateAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
+
+    @Override
+    public BatchResult deleteAll(List<String> keys) {
+        return batchWriter.deleteAll(ENTITY_NAMESPACE, TABLE, IBN_KEY_NAME, keys);
+    }
+
+    @Override
+    public Stream<IBNBoxDraft> stream(QueryRequest req) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectAllQuery(TABLE, req), MAPPER);
+    }
+
+    @Override
+    public Stream<IBNBoxDraft> streamWhere(Map<String, Object> columnValues) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectByColumnsQuery(TABLE, columnValues), MAPPER);
     }
 }
@@ -11,40 +11,70 @@ import com.sap.cloud.sdk.service.prov.api.EntityData;
 import com.sap.cloud.sdk.service.prov.api.filter.Expression;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
 
-import java.math.BigDecimal;
-import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
 
     private static final String ENTITY_NAME = "pptl.odata.ibn.manage.db.InboundDeliveryHeaderDraft";
     private static final String ENTITY_NAMESPACE = "pptl.odata.ibn.manage.db";
     private static final String IBN_KEY_NAME = "IBNID";
-    private static final String ITEM_KEY_NAME = "ITEMID";
     private static final String COUNT_PROPERTY_NAME = "COUNT(IBNID)";
     private static final String CDS_EXCEPTION_MESSAGE = "Error executing CDS query";
     private static final int SINGLE_ENTRY_INDEX = 0;
-    private Provider<IBNItemDraft> itemDraftProvider = new IBNItemDraftProvider();
-    private Provider<IBNItemSizeDraft> itemSizeDraftProvider = new IBNItemSizeDraftProvider();
+    static final DraftTable<IBNHeaderDraft> TABLE = new DraftTable<IBNHeaderDraft>(ENTITY_NAME, IBN_KEY_NAME)
+            .column("IBNID", ColumnType.UUID, IBNHeaderDraft::getIbnId, IBNHeaderDraft::setIbnId)
+            .column("IBNNUMBER", ColumnType.STRING, IBNHeaderDraft::getIBNNumber, IBNHeaderDraft::setIBNNumber)
+            .column("PONUMBER", ColumnType.STRING, IBNHeaderDraft::getPONumber, IBNHeaderDraft::setPONumber)
+            .column("PACKINGLISTNUMBER", ColumnType.STRING, IBNHeaderDraft::getPackingListNumber, IBNHeaderDraft::setPackingListNumber)
+            .column("SYSTEM", ColumnType.STRING, IBNHeaderDraft::getSystem, IBNHeaderDraft::setSystem)
+            .column("HANDOVERDATE", ColumnType.TIMESTAMP, IBNHeaderDraft::getHandoverDate, IBNHeaderDraft::setHandoverDate)
+            .column("METHODOFTRANSPORTATION", ColumnType.STRING, IBNHeaderDraft::getMethodOfTransportation, IBNHeaderDraft::setMethodOfTransportation)
+            .column("DATESUBMITTED", ColumnType.TIMESTAMP, IBNHeaderDraft::getDateSubmitted, IBNHeaderDraft::setDateSubmitted)
+            .column("TOTALITEMQTY", ColumnType.DECIMAL, IBNHeaderDraft::getTotalItemQty, IBNHeaderDraft::setTotalItemQty)
+            .column("VOLUME", ColumnType.DECIMAL, IBNHeaderDraft::getVolume, IBNHeaderDraft::setVolume)
+            .column("GROSSWEIGHT", ColumnType.DECIMAL, IBNHeaderDraft::getGrossWeight, IBNHeaderDraft::setGrossWeight)
+            .column("NETWEIGHT", ColumnType.DECIMAL, IBNHeaderDraft::getNetWeight, IBNHeaderDraft::setNetWeight)
+            .column("COUNTRYOFORIGIN", ColumnType.STRING, IBNHeaderDraft::getCountryOfOrigin, IBNHeaderDraft::setCountryOfOrigin)
+            .column("COLLECTIONCOUNTRY", ColumnType.STRING, IBNHeaderDraft::getCollectionCountry, IBNHeaderDraft::setCollectionCountry)
+            .column("DESTCOUNTRYNAME", ColumnType.STRING, IBNHeaderDraft::getDestCountryName, IBNHeaderDraft::setDestCountryName)
+            .column("CREATEDAT", ColumnType.TIMESTAMP, IBNHeaderDraft::getCreatedAt, IBNHeaderDraft::setCreatedAt)
+            .column("STATUS", ColumnType.STRING, IBNHeaderDraft::getStatus, IBNHeaderDraft::setStatus)
+            .column("AWBNUMBER", ColumnType.STRING, IBNHeaderDraft::getAWBNumber, IBNHeaderDraft::setAWBNumber)
+            .notNull("CREATEDAT", "STATUS");
+    static final DraftMapper<IBNHeaderDraft> MAPPER = new DraftMapper<>(TABLE, IBNHeaderDraft::new);
+    private Provider<IBNItemDraft> itemDraftProvider = new InstrumentedProvider<>(new IBNItemDraftProvider(), IBNItemDraftProvider.TABLE);
+    private Provider<IBNItemSizeDraft> itemSizeDraftProvider = new InstrumentedProvider<>(new IBNItemSizeDraftProvider(), IBNItemSizeDraftProvider.TABLE);
+    private BatchWriter batchWriter = new BatchWriter();
+    private DraftTreeLoader treeLoader = new DraftTreeLoader(itemDraftProvider, itemSizeDraftProvider);
+    private DraftTreeDeleter treeDeleter = new DraftTreeDeleter();
+    private DraftExpander expander = new DraftExpander();
 
     @Override
     public IBNHeaderDraft save(IBNHeaderDraft header) {
         try {
-            setKeys(header);
-            header.setStatus(InboundDeliveryStatusEnum.DRAFT.toString());
-            header.setCreatedAt(LocalDateTime.now());
+            prepareForInsert(header);
             EntityData data = EntityData.createFromMap(header.toMapOfFields(), new ArrayList<>(header.getKey().keySet()), ENTITY_NAME);
 
-            return DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeInsert(data, true).as(IBNHeaderDraft.class);
+            IBNHeaderDraft saved = DataSourceManager.getInstance().execute(ENTITY_NAMESPACE, handler -> handler.executeInsert(data, true)).as(IBNHeaderDraft.class);
+            DraftCacheInvalidator.getInstance().invalidate(header.getIbnId());
+            return saved;
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
     }
 
-    private void setKeys(IBNHeaderDraft header) {
+    static void prepareForInsert(IBNHeaderDraft header) {
+        setKeys(header);
+        header.setStatus(InboundDeliveryStatusEnum.DRAFT.toString());
+        header.setCreatedAt(LocalDateTime.now());
+    }
+
+    private static void setKeys(IBNHeaderDraft header) {
         header.setIbnId(UUID.randomUUID());
         if (header.getIBNNumber() == null) {
             header.setIBNNumber(Constants.NO_VALUE_STRING);
@@ -57,7 +87,8 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
         try {
             Map<String, Object> keys = new HashMap<>();
             keys.put(IBN_KEY_NAME, key);
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeDelete(ENTITY_NAME, keys);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeDelete(ENTITY_NAME, keys));
+            DraftCacheInvalidator.getInstance().invalidate(key);
 
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
@@ -71,7 +102,8 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
             keys.put(IBN_KEY_NAME, headerDraft.getIbnId());
             EntityData data = EntityData.createFrom(headerDraft, ENTITY_NAME);
 
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeUpdate(data, keys, true);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeUpdate(data, keys, true));
+            DraftCacheInvalidator.getInstance().invalidate(headerDraft.getIbnId());
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -83,7 +115,7 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(IBN_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
                 return Optional.empty();
@@ -92,7 +124,7 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
             return Optional.of(selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX));
 
@@ -104,30 +136,25 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
     @Override
     public Optional<IBNHeaderDraft> getByKeyFetched(String key) {
         try {
+            CompletableFuture<List<IBNItemDraft>> items = treeLoader.loadItemsAsync(key);
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(IBN_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
+                items.cancel(false);
                 return Optional.empty();
             }
 
             IBNHeaderDraft headerDraft = selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX);
 
-            List<IBNItemDraft> items = itemDraftProvider.query(new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(key));
-            for (IBNItemDraft item : items) {
-                List<IBNItemSizeDraft> itemSizes = itemSizeDraftProvider.query(
-                        new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(item.getIbnId().toString())
-                                .AND(new ConditionBuilder().columnName(ITEM_KEY_NAME).EQ(item.getItemId().toString())));
-                item.setSizes(itemSizes);
-            }
-            headerDraft.setItems(items);
+            headerDraft.setItems(DraftTreeLoader.join(items));
 
             return Optional.of(headerDraft);
 
@@ -140,7 +167,7 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
     public Integer getInlineCount() {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountQuery(ENTITY_NAME, IBN_KEY_NAME);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -153,7 +180,7 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
     public Integer getInlineCountFiltered(Expression filterExpression) {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountFilteredQuery(ENTITY_NAME, IBN_KEY_NAME, filterExpression);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -166,12 +193,12 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
     public List<IBNHeaderDraft> getAll(QueryRequest req) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -183,13 +210,13 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
     public List<IBNHeaderDraft> getAllFiltered(QueryRequest req) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -197,6 +224,28 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
         }
     }
 
+    @Override
+    public KeysetPage<IBNHeaderDraft> getPage(QueryRequest req, String continuationToken) {
+        try {
+
+            KeysetQuery<IBNHeaderDraft> keysetQuery = CdsQueryBuilder.buildKeysetQuery(TABLE, req, continuationToken);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, keysetQuery.getQuery());
+            return keysetQuery.toPage(selectResult
+                    .getResult()
+                    .stream()
+                    .map(MAPPER::fromEntityData)
+                    .collect(Collectors.toList()));
+
+        } catch (CDSException e) {
+            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
+        }
+    }
+
+    @Override
+    public PageResult<IBNHeaderDraft> getAllWithCount(QueryRequest req) {
+        return PageQuery.execute(ENTITY_NAMESPACE, TABLE, req, MAPPER::fromEntityData);
+    }
+
     @Override
     public List<IBNHeaderDraft> getAllFetchedByKey(String key) {
         return null;
@@ -206,12 +255,12 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
     public List<IBNHeaderDraft> query(ConditionBuilder.Condition condition) {
         try {
             CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME, condition);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -219,32 +268,49 @@ public class IBNHeaderDraftProvider implements Provider<IBNHeaderDraft> {
         }
     }
 
-    private IBNHeaderDraft populate(Map<String, Object> entityProperties) {
-        IBNHeaderDraft draft = new IBNHeaderDraft();
-        draft.setIbnId(UUID.fromString(entityProperties.get("IBNID").toString()));
-        draft.setIBNNumber(entityProperties.computeIfAbsent("IBNNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-        draft.setPONumber(entityProperties.computeIfAbsent("PONUMBER", key -> Constants.NO_VALUE_STRING).toString());
-        draft.setPackingListNumber(entityProperties.computeIfAbsent("PACKINGLISTNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-        draft.setSystem(entityProperties.computeIfAbsent("SYSTEM", key -> Constants.NO_VALUE_STRING).toString());
-        draft.setHandoverDate((LocalDateTime) entityProperties.computeIfPresent("HANDOVERDATE", (k, v) -> convertToLocaleDateTime(v)));
-        draft.setMethodOfTransportation(entityProperties.computeIfAbsent("METHODOFTRANSPORTATION", key ->  Constants.NO_VALUE_STRING).toString());
-        draft.setDateSubmitted((LocalDateTime) entityProperties.computeIfPresent("DATESUBMITTED", (k, v) -> convertToLocaleDateTime(v)));
-        draft.setTotalItemQty((BigDecimal) entityProperties.computeIfPresent("TOTALITEMQTY",   (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        draft.setVolume((BigDecimal) entityProperties.computeIfPresent("VOLUME", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        draft.setGrossWeight((BigDecimal) entityProperties.computeIfPresent("GROSSWEIGHT", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        draft.setNetWeight((BigDecimal) entityProperties.computeIfPresent("NETWEIGHT", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        draft.setCountryOfOrigin(entityProperties.computeIfAbsent("COUNTRYOFORIGIN", key ->  Constants.NO_VALUE_STRING).toString());
-        draft.setCollectionCountry(entityProperties.computeIfAbsent("COLLECTIONCOUNTRY", key ->  Constants.NO_VALUE_STRING).toString());
-        draft.setDestCountryName(entityProperties.computeIfAbsent("DESTCOUNTRYNAME", key ->  Constants.NO_VALUE_STRING).toString());
-        draft.setCreatedAt((LocalDateTime)  entityProperties.computeIfPresent("CREATEDAT", (k, v) -> (convertToLocaleDateTime(v))));
-        draft.setStatus(entityProperties.computeIfAbsent("STATUS",  key ->  Constants.NO_VALUE_STRING).toString());
-        draft.setAWBNumber(entityProperties.computeIfAbsent("AWBNUMBER",  key ->  Constants.NO_VALUE_STRING).toString());
-
-        return draft;
-    }
-
-    private LocalDateTime convertToLocaleDateTime(Object date) {
-        Timestamp timestamp = (Timestamp) date;
-        return timestamp.toLocalDateTime();
+    @Override
+    public BatchResult saveAll(List<IBNHeaderDraft> headerDrafts) {
+        headerDrafts.forEach(IBNHeaderDraftProvider::prepareForInsert);
+        return batchWriter.insertAll(ENTITY_NAMESPACE, TABLE, headerDrafts);
+    }
+
+    @Override
+    public BatchResult updateAll(List<IBNHeaderDraft> drafts) {
+        return batchWriter.updateAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
+
+    @Override
+    public BatchResult deleteAll(List<String> keys) {
+        return batchWriter.deleteAll(ENTITY_NAMESPACE, TABLE, IBN_KEY_NAME, keys);
+    }
+
+    /**
+     * Deletes the given drafts together with their boxes, items and sizes.
+     */
+    public TreeDeleteResult deleteTrees(Collection<String> ibnIds) {
+        return treeDeleter.deleteTrees(ibnIds);
+    }
+
+    /**
+     * Reads the headers of the request with the given expand path, e.g. {@code Items/Sizes}, in one statement.
+     * A $filter only translates to CDS, so filtered requests read the headers through CDS and load each expanded
+     * level for all of them at once.
+     */
+    public List<IBNHeaderDraft> getAllExpanded(QueryRequest req, String expandPath) {
+        DraftExpander.ExpandPath path = DraftExpander.ExpandPath.parse(expandPath);
+        if (req.getQueryExpression() == null) {
+            return expander.expand(req, path);
+        }
+        return expander.attach(getAllFiltered(req), path);
+    }
+
+    @Override
+    public Stream<IBNHeaderDraft> stream(QueryRequest req) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectAllQuery(TABLE, req), MAPPER);
+    }
+
+    @Override
+    public Stream<IBNHeaderDraft> streamWhere(Map<String, Object> columnValues) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectByColumnsQuery(TABLE, columnValues), MAPPER);
     }
 }
@@ -1,7 +1,6 @@
 package com.burberry.pptl.odata.ibn.manage.hdi;
 
 import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
-import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemDraft;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
 import com.sap.cloud.sdk.hana.connectivity.cds.CDSException;
@@ -12,11 +11,9 @@ import com.sap.cloud.sdk.service.prov.api.EntityData;
 import com.sap.cloud.sdk.service.prov.api.filter.Expression;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
 
-import java.math.BigDecimal;
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
 
@@ -28,12 +25,35 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     private static final String COUNT_PROPERTY_NAME = "COUNT(ITEMID)";
     private static final String CDS_EXCEPTION_MESSAGE = "Error executing CDS query";
     private static final int SINGLE_ENTRY_INDEX = 0;
-    private Provider<IBNItemSizeDraft> itemSizeDraftProvider = new IBNItemSizeDraftProvider();
+    static final DraftTable<IBNItemDraft> TABLE = new DraftTable<IBNItemDraft>(ENTITY_NAME, ITEM_KEY_NAME)
+            .column("ITEMID", ColumnType.UUID, IBNItemDraft::getItemId, IBNItemDraft::setItemId)
+            .column("IBNID", ColumnType.UUID, IBNItemDraft::getIbnId, IBNItemDraft::setIbnId)
+            .column("HANABOXID", ColumnType.STRING, IBNItemDraft::getHanaBoxId, IBNItemDraft::setHanaBoxId)
+            .column("IBNNUMBER", ColumnType.STRING, IBNItemDraft::getIBNNumber, IBNItemDraft::setIBNNumber)
+            .column("BOXID", ColumnType.STRING, IBNItemDraft::getBoxId, IBNItemDraft::setBoxId)
+            .column("MATERIALNUMBER", ColumnType.STRING, IBNItemDraft::getMaterialNumber, IBNItemDraft::setMaterialNumber)
+            .column("DESCRIPTION", ColumnType.STRING, IBNItemDraft::getDescription, IBNItemDraft::setDescription)
+            .column("COLOR", ColumnType.STRING, IBNItemDraft::getColor, IBNItemDraft::setColor)
+            .column("PRICE", ColumnType.DECIMAL, IBNItemDraft::getPrice, IBNItemDraft::setPrice)
+            .column("COUNTRYOFORIGIN", ColumnType.STRING, IBNItemDraft::getCountryOfOrigin, IBNItemDraft::setCountryOfOrigin)
+            .column("COLLECTIONCOUNTRY", ColumnType.STRING, IBNItemDraft::getCollectionCountry, IBNItemDraft::setCollectionCountry)
+            .column("METHODOFTRANSPORTATION", ColumnType.STRING, IBNItemDraft::getMethodOfTransportation, IBNItemDraft::setMethodOfTransportation)
+            .column("EXFACTORYDATE", ColumnType.TIMESTAMP, IBNItemDraft::getExFactoryDate, IBNItemDraft::setExFactoryDate)
+            .column("DELIVERYDATE", ColumnType.TIMESTAMP, IBNItemDraft::getDeliveryDate, IBNItemDraft::setDeliveryDate)
+            .column("CURRENCY", ColumnType.STRING, IBNItemDraft::getCurrency, IBNItemDraft::setCurrency)
+            .column("QUANTITY", ColumnType.DECIMAL, IBNItemDraft::getPlanningQty, IBNItemDraft::setPlanningQty)
+            .notNull("IBNID");
+    static final DraftMapper<IBNItemDraft> MAPPER = new DraftMapper<>(TABLE, IBNItemDraft::new);
+    private Provider<IBNItemSizeDraft> itemSizeDraftProvider = new InstrumentedProvider<>(new IBNItemSizeDraftProvider(), IBNItemSizeDraftProvider.TABLE);
+    private BatchWriter batchWriter = new BatchWriter();
+    private DraftTreeLoader treeLoader = new DraftTreeLoader(new InstrumentedProvider<>(this, TABLE), itemSizeDraftProvider);
 
     @Override
     public IBNItemDraft save(IBNItemDraft header) {
         try {
-            return DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeInsert(header, ENTITY_NAME, true);
+            IBNItemDraft saved = DataSourceManager.getInstance().execute(ENTITY_NAMESPACE, handler -> handler.executeInsert(header, ENTITY_NAME, true));
+            DraftCacheInvalidator.getInstance().invalidate(header.getIbnId());
+            return saved;
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -44,7 +64,8 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
         try {
             Map<String, Object> keys = new HashMap<>();
             keys.put(IBN_KEY_NAME, key);
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeDelete(ENTITY_NAME, keys);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeDelete(ENTITY_NAME, keys));
+            DraftCacheInvalidator.getInstance().invalidate(key);
 
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
@@ -58,7 +79,8 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
             keys.put(ITEM_KEY_NAME, itemDraft.getItemId());
             EntityData data = EntityData.createFrom(itemDraft, ENTITY_NAME);
 
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeUpdate(data, keys, true);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeUpdate(data, keys, true));
+            DraftCacheInvalidator.getInstance().invalidate(itemDraft.getIbnId());
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -70,7 +92,7 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(ITEM_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
                 return Optional.empty();
@@ -79,7 +101,7 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
             return Optional.of(selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX));
 
@@ -95,7 +117,7 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(ITEM_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
                 return Optional.empty();
@@ -104,7 +126,7 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
             IBNItemDraft itemDraft = selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX);
 
@@ -126,12 +148,12 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     public List<IBNItemDraft> query(ConditionBuilder.Condition condition) {
         try {
             CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME, condition);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -143,7 +165,7 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     public Integer getInlineCount() {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountQuery(ENTITY_NAME, ITEM_KEY_NAME);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -156,7 +178,7 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     public Integer getInlineCountFiltered(Expression filterExpression) {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountFilteredQuery(ENTITY_NAME, ITEM_KEY_NAME, filterExpression);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -169,12 +191,12 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     public List<IBNItemDraft> getAll(QueryRequest req) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -186,13 +208,13 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     public List<IBNItemDraft> getAllFiltered(QueryRequest req) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -201,84 +223,59 @@ public class IBNItemDraftProvider implements Provider<IBNItemDraft> {
     }
 
     @Override
-    public List<IBNItemDraft> getAllFetchedByKey(String ibnId) {
+    public KeysetPage<IBNItemDraft> getPage(QueryRequest req, String continuationToken) {
         try {
 
-            CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME, new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(ibnId));
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
-
-            List<IBNItemDraft> itemDrafts = selectResult
+            KeysetQuery<IBNItemDraft> keysetQuery = CdsQueryBuilder.buildKeysetQuery(TABLE, req, continuationToken);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, keysetQuery.getQuery());
+            return keysetQuery.toPage(selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
-                    .collect(Collectors.toList());
-
-            for (IBNItemDraft item : itemDrafts) {
-                List<IBNItemSizeDraft> itemSizes = itemSizeDraftProvider.query(
-                        new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(item.getIbnId().toString())
-                                .AND(new ConditionBuilder().columnName(ITEM_KEY_NAME).EQ(item.getItemId().toString())));
-                item.setSizes(itemSizes);
-            }
-
-            return itemDrafts;
+                    .map(MAPPER::fromEntityData)
+                    .collect(Collectors.toList()));
 
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
     }
 
-    public List<IBNItemDraft> getAllFetchedByKeysForBoxes(String ibnId, String hanaBoxId) {
-        try {
+    @Override
+    public PageResult<IBNItemDraft> getAllWithCount(QueryRequest req) {
+        return PageQuery.execute(ENTITY_NAMESPACE, TABLE, req, MAPPER::fromEntityData);
+    }
 
-            CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME,
-                    new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(ibnId)
-                    .AND(new ConditionBuilder().columnName(HANA_BOX_KEY_NAME).EQ(hanaBoxId)));
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+    @Override
+    public List<IBNItemDraft> getAllFetchedByKey(String ibnId) {
+        return treeLoader.loadItems(ibnId);
+    }
 
-            List<IBNItemDraft> itemDrafts = selectResult
-                    .getResult()
-                    .stream()
-                    .map(entityData -> populate(entityData.asMap()))
-                    .collect(Collectors.toList());
+    public List<IBNItemDraft> getAllFetchedByKeysForBoxes(String ibnId, String hanaBoxId) {
+        return treeLoader.loadItems(new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(ibnId)
+                .AND(new ConditionBuilder().columnName(HANA_BOX_KEY_NAME).EQ(hanaBoxId)));
+    }
 
-            for (IBNItemDraft item : itemDrafts) {
-                List<IBNItemSizeDraft> itemSizes = itemSizeDraftProvider.query(
-                        new ConditionBuilder().columnName(IBN_KEY_NAME).EQ(item.getIbnId().toString())
-                                .AND(new ConditionBuilder().columnName(ITEM_KEY_NAME).EQ(item.getItemId().toString())));
-                item.setSizes(itemSizes);
-            }
+    @Override
+    public BatchResult saveAll(List<IBNItemDraft> drafts) {
+        return batchWriter.insertAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
 
-            return itemDrafts;
+    @Override
+    public BatchResult updateAll(List<IBNItemDraft> drafts) {
+        return batchWriter.updateAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
 
-        } catch (CDSException e) {
-            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
-        }
+    @Override
+    public BatchResult deleteAll(List<String> keys) {
+        return batchWriter.deleteAll(ENTITY_NAMESPACE, TABLE, IBN_KEY_NAME, keys);
     }
 
-    private IBNItemDraft populate(Map<String, Object> entityProperties) {
-        IBNItemDraft itemDraft = new IBNItemDraft();
-                itemDraft.setItemId(UUID.fromString(entityProperties.get("ITEMID").toString()));
-                itemDraft.setIbnId(UUID.fromString(entityProperties.get("IBNID").toString()));
-                itemDraft.setHanaBoxId(entityProperties.computeIfAbsent("HANABOXID", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setIBNNumber(entityProperties.computeIfAbsent("IBNNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setBoxId(entityProperties.computeIfAbsent("BOXID", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setMaterialNumber(entityProperties.computeIfAbsent("MATERIALNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setDescription(entityProperties.computeIfAbsent("DESCRIPTION", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setColor(entityProperties.computeIfAbsent("COLOR", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setPrice((BigDecimal) entityProperties.computeIfPresent("PRICE", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-                itemDraft.setCountryOfOrigin(entityProperties.computeIfAbsent("COUNTRYOFORIGIN", key ->  Constants.NO_VALUE_STRING).toString());
-                itemDraft.setCollectionCountry(entityProperties.computeIfAbsent("COLLECTIONCOUNTRY", key ->  Constants.NO_VALUE_STRING).toString());
-                itemDraft.setMethodOfTransportation(entityProperties.computeIfAbsent("METHODOFTRANSPORTATION", key ->  Constants.NO_VALUE_STRING).toString());
-                itemDraft.setExFactoryDate((LocalDateTime) entityProperties.computeIfPresent("EXFACTORYDATE", (k, v) -> convertToLocaleDateTime(v)));
-                itemDraft.setDeliveryDate((LocalDateTime) entityProperties.computeIfPresent("DELIVERYDATE", (k, v) -> convertToLocaleDateTime(v)));
-                itemDraft.setCurrency(entityProperties.computeIfAbsent("CURRENCY", key -> Constants.NO_VALUE_STRING).toString());
-                itemDraft.setPlanningQty((BigDecimal) entityProperties.computeIfPresent("QUANTITY", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-
-        return itemDraft;
+    @Override
+    public Stream<IBNItemDraft> stream(QueryRequest req) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectAllQuery(TABLE, req), MAPPER);
     }
 
-    private LocalDateTime convertToLocaleDateTime(Object date) {
-        Timestamp timestamp = (Timestamp) date;
-        return timestamp.toLocalDateTime();
+    @Override
+    public Stream<IBNItemDraft> streamWhere(Map<String, Object> columnValues) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectByColumnsQuery(TABLE, columnValues), MAPPER);
     }
 }
@@ -1,7 +1,6 @@
 package com.burberry.pptl.odata.ibn.manage.hdi;
 
 import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
-import com.burberry.pptl.odata.ibn.manage.service.helpers.Constants;
 import com.burberry.pptl.odata.ibn.manage.vdm.namespaces.pptldraft.IBNItemSizeDraft;
 import com.sap.cloud.sdk.hana.connectivity.cds.CDSException;
 import com.sap.cloud.sdk.hana.connectivity.cds.CDSQuery;
@@ -11,9 +10,9 @@ import com.sap.cloud.sdk.service.prov.api.EntityData;
 import com.sap.cloud.sdk.service.prov.api.filter.Expression;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
 
-import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
 
@@ -25,11 +24,28 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
     private static final int SINGLE_ENTRY_INDEX = 0;
     private static final String COUNT_PROPERTY_NAME = "COUNT(SIZEID)";
     private static final String CDS_EXCEPTION_MESSAGE = "Error executing CDS query";
+    static final DraftTable<IBNItemSizeDraft> TABLE = new DraftTable<IBNItemSizeDraft>(ENTITY_NAME, SIZE_KEY_NAME)
+            .column("SIZEID", ColumnType.UUID, IBNItemSizeDraft::getSizeId, IBNItemSizeDraft::setSizeId)
+            .column("IBNID", ColumnType.UUID, IBNItemSizeDraft::getIbnId, IBNItemSizeDraft::setIbnId)
+            .column("HANABOXID", ColumnType.STRING, IBNItemSizeDraft::getHanaBoxId, IBNItemSizeDraft::setHanaBoxId)
+            .column("ITEMID", ColumnType.UUID, IBNItemSizeDraft::getItemId, IBNItemSizeDraft::setItemId)
+            .column("IBNNUMBER", ColumnType.STRING, IBNItemSizeDraft::getIBNNumber, IBNItemSizeDraft::setIBNNumber)
+            .column("IBNITEMNUMBER", ColumnType.STRING, IBNItemSizeDraft::getIBNItemNumber, IBNItemSizeDraft::setIBNItemNumber)
+            .column("BOXID", ColumnType.STRING, IBNItemSizeDraft::getBoxID, IBNItemSizeDraft::setBoxID)
+            .column("SIZE", ColumnType.STRING, IBNItemSizeDraft::getSize, IBNItemSizeDraft::setSize)
+            .column("PRICE", ColumnType.DECIMAL, IBNItemSizeDraft::getPrice, IBNItemSizeDraft::setPrice)
+            .column("CURRENCY", ColumnType.STRING, IBNItemSizeDraft::getCurrency, IBNItemSizeDraft::setCurrency)
+            .column("QUANTITY", ColumnType.DECIMAL, IBNItemSizeDraft::getPlanningQty, IBNItemSizeDraft::setPlanningQty)
+            .notNull("IBNID", "ITEMID");
+    static final DraftMapper<IBNItemSizeDraft> MAPPER = new DraftMapper<>(TABLE, IBNItemSizeDraft::new);
+    private BatchWriter batchWriter = new BatchWriter();
 
     @Override
     public IBNItemSizeDraft save(IBNItemSizeDraft header) {
         try {
-            return DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeInsert(header, ENTITY_NAME, true);
+            IBNItemSizeDraft saved = DataSourceManager.getInstance().execute(ENTITY_NAMESPACE, handler -> handler.executeInsert(header, ENTITY_NAME, true));
+            DraftCacheInvalidator.getInstance().invalidate(header.getIbnId());
+            return saved;
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -40,7 +56,8 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
         try {
             Map<String, Object> keys = new HashMap<>();
             keys.put(IBN_KEY_NAME, key);
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeDelete(ENTITY_NAME, keys);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeDelete(ENTITY_NAME, keys));
+            DraftCacheInvalidator.getInstance().invalidate(key);
 
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
@@ -54,7 +71,8 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
             keys.put(SIZE_KEY_NAME, itemSizeDraft.getSizeId());
             EntityData data = EntityData.createFrom(itemSizeDraft, ENTITY_NAME);
 
-            DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeUpdate(data, keys, true);
+            DataSourceManager.getInstance().run(ENTITY_NAMESPACE, handler -> handler.executeUpdate(data, keys, true));
+            DraftCacheInvalidator.getInstance().invalidate(itemSizeDraft.getIbnId());
         } catch (CDSException e) {
             throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
         }
@@ -66,7 +84,7 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
             Map<String, Object> keysMap = new HashMap<>();
             keysMap.put(SIZE_KEY_NAME, key);
             CDSQuery query = CdsQueryBuilder.buildSelectByKeysQuery(ENTITY_NAME, keysMap);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             if (selectResult.getResult().isEmpty()) {
                 return Optional.empty();
@@ -75,7 +93,7 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
             return Optional.of(selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList())
                     .get(SINGLE_ENTRY_INDEX));
 
@@ -93,7 +111,7 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
     public Integer getInlineCount() {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountQuery(ENTITY_NAME, SIZE_KEY_NAME);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -106,7 +124,7 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
     public Integer getInlineCountFiltered(Expression filterExpression) {
         try {
             CDSQuery query = CdsQueryBuilder.buildInlineCountFilteredQuery(ENTITY_NAME, SIZE_KEY_NAME, filterExpression);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return Integer.parseInt(selectResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(COUNT_PROPERTY_NAME).toString());
 
@@ -118,13 +136,13 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
     @Override
     public List<IBNItemSizeDraft> getAll(QueryRequest req) {
         try {
-            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -135,13 +153,13 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
     @Override
     public List<IBNItemSizeDraft> getAllFiltered(QueryRequest req) {
         try {
-            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(ENTITY_NAME, req);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSQuery query = CdsQueryBuilder.buildSelectAllFilteredQuery(TABLE, req);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -149,6 +167,28 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
         }
     }
 
+    @Override
+    public KeysetPage<IBNItemSizeDraft> getPage(QueryRequest req, String continuationToken) {
+        try {
+
+            KeysetQuery<IBNItemSizeDraft> keysetQuery = CdsQueryBuilder.buildKeysetQuery(TABLE, req, continuationToken);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, keysetQuery.getQuery());
+            return keysetQuery.toPage(selectResult
+                    .getResult()
+                    .stream()
+                    .map(MAPPER::fromEntityData)
+                    .collect(Collectors.toList()));
+
+        } catch (CDSException e) {
+            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
+        }
+    }
+
+    @Override
+    public PageResult<IBNItemSizeDraft> getAllWithCount(QueryRequest req) {
+        return PageQuery.execute(ENTITY_NAMESPACE, TABLE, req, MAPPER::fromEntityData);
+    }
+
     @Override
     public List<IBNItemSizeDraft> getAllFetchedByKey(String key) {
         return query(new ConditionBuilder().columnName(ITEM_KEY_NAME).EQ(key));
@@ -159,12 +199,12 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
 
         try {
             CDSQuery query = CdsQueryBuilder.buildSelectByConditionQuery(ENTITY_NAME, condition);
-            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().getCDSHandler(ENTITY_NAMESPACE).executeQuery(query);
+            CDSSelectQueryResult selectResult = DataSourceManager.getInstance().select(ENTITY_NAMESPACE, query);
 
             return selectResult
                     .getResult()
                     .stream()
-                    .map(entityData -> populate(entityData.asMap()))
+                    .map(MAPPER::fromEntityData)
                     .collect(Collectors.toList());
 
         } catch (CDSException e) {
@@ -172,20 +212,28 @@ public class IBNItemSizeDraftProvider implements Provider<IBNItemSizeDraft>{
         }
     }
 
-    private IBNItemSizeDraft populate(Map<String, Object> entityProperties) {
-        IBNItemSizeDraft sizeDraft = new IBNItemSizeDraft();
-        sizeDraft.setSizeId(UUID.fromString(entityProperties.get("SIZEID").toString()));
-        sizeDraft.setIbnId(UUID.fromString(entityProperties.get("IBNID").toString()));
-        sizeDraft.setHanaBoxId(entityProperties.computeIfAbsent("HANABOXID", key -> Constants.NO_VALUE_STRING).toString());
-        sizeDraft.setItemId(UUID.fromString(entityProperties.get("ITEMID").toString()));
-        sizeDraft.setIBNNumber(entityProperties.computeIfAbsent("IBNNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-        sizeDraft.setIBNItemNumber(entityProperties.computeIfAbsent("IBNITEMNUMBER", key -> Constants.NO_VALUE_STRING).toString());
-        sizeDraft.setBoxID(entityProperties.computeIfAbsent("BOXID", key -> Constants.NO_VALUE_STRING).toString());
-        sizeDraft.setSize(entityProperties.computeIfAbsent("SIZE", key -> Constants.NO_VALUE_STRING).toString());
-        sizeDraft.setPrice((BigDecimal) entityProperties.computeIfPresent("PRICE", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-        sizeDraft.setCurrency(entityProperties.computeIfAbsent("CURRENCY", key -> Constants.NO_VALUE_STRING).toString());
-        sizeDraft.setPlanningQty((BigDecimal) entityProperties.computeIfPresent("QUANTITY", (k, v) ->  BigDecimal.valueOf(Double.parseDouble(v.toString()))));
-
-        return sizeDraft;
+    @Override
+    public BatchResult saveAll(List<IBNItemSizeDraft> drafts) {
+        return batchWriter.insertAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
+
+    @Override
+    public BatchResult updateAll(List<IBNItemSizeDraft> drafts) {
+        return batchWriter.updateAll(ENTITY_NAMESPACE, TABLE, drafts);
+    }
+
+    @Override
+    public BatchResult deleteAll(List<String> keys) {
+        return batchWriter.deleteAll(ENTITY_NAMESPACE, TABLE, IBN_KEY_NAME, keys);
+    }
+
+    @Override
+    public Stream<IBNItemSizeDraft> stream(QueryRequest req) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectAllQuery(TABLE, req), MAPPER);
+    }
+
+    @Override
+    public Stream<IBNItemSizeDraft> streamWhere(Map<String, Object> columnValues) {
+        return CursorReader.stream(ENTITY_NAMESPACE, SqlQueryBuilder.buildSelectByColumnsQuery(TABLE, columnValues), MAPPER);
     }
 }
@@ -0,0 +1,97 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded thread pool that records how long tasks wait and how often it is saturated. When the queue is full the
+ * task runs on the submitting thread, which slows callers down instead of failing them.
+ * <p>
+ * A {@link CompletableFuture} keeps the exception of its task to itself, so tasks submitted that way only count as
+ * failed when they are submitted with {@link #supplyAsync} or {@link #runAsync}. Cancelled futures are not failures.
+ */
+public class InstrumentedExecutor implements Executor {
+
+    private final String name;
+    private final ThreadPoolExecutor delegate;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    public InstrumentedExecutor(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.delegate = HdiExecutors.newDaemonPool(name, threads, new ArrayBlockingQueue<>(queueCapacity));
+        this.delegate.setRejectedExecutionHandler((task, executor) -> {
+            if (!executor.isShutdown()) {
+                callerRuns.increment();
+                task.run();
+            }
+        });
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        submitted.increment();
+        long enqueuedAt = System.nanoTime();
+        Runnable scopedTask = RequestQueryCounter.propagate(task);
+        delegate.execute(() -> {
+            long waitNanos = System.nanoTime() - enqueuedAt;
+            totalQueueWaitNanos.add(waitNanos);
+            maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            try {
+                scopedTask.run();
+            } catch (RuntimeException | Error e) {
+                failed.increment();
+                throw e;
+            } finally {
+                completed.increment();
+            }
+        });
+    }
+
+    /**
+     * Like {@link CompletableFuture#supplyAsync(Supplier, Executor)}, counting calls that complete exceptionally
+     * as failed when the executor is instrumented.
+     */
+    public static <R> CompletableFuture<R> supplyAsync(Supplier<R> call, Executor executor) {
+        return countFailures(CompletableFuture.supplyAsync(call, executor), executor);
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable call, Executor executor) {
+        return countFailures(CompletableFuture.runAsync(call, executor), executor);
+    }
+
+    private static <R> CompletableFuture<R> countFailures(CompletableFuture<R> future, Executor executor) {
+        if (executor instanceof InstrumentedExecutor) {
+            LongAdder failures = ((InstrumentedExecutor) executor).failed;
+            future.whenComplete((result, error) -> {
+                if (error != null && !(error instanceof CancellationException)) {
+                    failures.increment();
+                }
+            });
+        }
+        return future;
+    }
+
+    public ExecutorStats getStats() {
+        long started = completed.sum();
+        double averageWaitMillis = started == 0 ? 0 : (double) totalQueueWaitNanos.sum() / started / TimeUnit.MILLISECONDS.toNanos(1);
+        return new ExecutorStats(name, delegate.getPoolSize(), delegate.getActiveCount(), delegate.getQueue().size(),
+                submitted.sum(), completed.sum(), failed.sum(), callerRuns.sum(),
+                averageWaitMillis, (double) maxQueueWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
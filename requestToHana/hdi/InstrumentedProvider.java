@@ -0,0 +1,202 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.filter.Expression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Records latency, returned rows and decoded bytes of every call of a provider in {@link ProviderMetrics}. Bytes are
+ * estimated from the column values of the returned drafts: two bytes per character and a fixed size for the other
+ * column types. {@link DraftProviders} hands out the draft providers wrapped this way.
+ * <p>
+ * The latency of {@code stream} and {@code streamWhere} is measured until the stream is closed.
+ */
+public class InstrumentedProvider<T> implements Provider<T> {
+
+    private static final int FIXED_VALUE_BYTES = 16;
+
+    private final Provider<T> delegate;
+    private final DraftTable<T> table;
+    private final String entity;
+
+    public InstrumentedProvider(Provider<T> delegate, DraftTable<T> table) {
+        this.delegate = delegate;
+        this.table = table;
+        this.entity = QueryFingerprint.shortName(table.getEntityName());
+    }
+
+    @Override
+    public T save(T header) {
+        return timed("save", () -> delegate.save(header), this::single);
+    }
+
+    @Override
+    public void deleteByKey(String key) {
+        timed("deleteByKey", () -> {
+            delegate.deleteByKey(key);
+            return null;
+        }, this::none);
+    }
+
+    @Override
+    public void update(T header) {
+        timed("update", () -> {
+            delegate.update(header);
+            return null;
+        }, this::none);
+    }
+
+    @Override
+    public Optional<T> getByKey(String key) {
+        return timed("getByKey", () -> delegate.getByKey(key), this::optional);
+    }
+
+    @Override
+    public Optional<T> getByKeyFetched(String key) {
+        return timed("getByKeyFetched", () -> delegate.getByKeyFetched(key), this::optional);
+    }
+
+    @Override
+    public Integer getInlineCount() {
+        return timed("getInlineCount", delegate::getInlineCount, this::none);
+    }
+
+    @Override
+    public Integer getInlineCountFiltered(Expression filterExpression) {
+        return timed("getInlineCountFiltered", () -> delegate.getInlineCountFiltered(filterExpression), this::none);
+    }
+
+    @Override
+    public List<T> getAll(QueryRequest req) {
+        return timed("getAll", () -> delegate.getAll(req), this::rows);
+    }
+
+    @Override
+    public List<T> getAllFiltered(QueryRequest req) {
+        return timed("getAllFiltered", () -> delegate.getAllFiltered(req), this::rows);
+    }
+
+    @Override
+    public KeysetPage<T> getPage(QueryRequest req, String continuationToken) {
+        return timed("getPage", () -> delegate.getPage(req, continuationToken), page -> rows(page.getItems()));
+    }
+
+    @Override
+    public PageResult<T> getAllWithCount(QueryRequest req) {
+        return timed("getAllWithCount", () -> delegate.getAllWithCount(req), page -> rows(page.getItems()));
+    }
+
+    @Override
+    public List<T> getAllFetchedByKey(String key) {
+        return timed("getAllFetchedByKey", () -> delegate.getAllFetchedByKey(key), this::rows);
+    }
+
+    @Override
+    public List<T> query(ConditionBuilder.Condition condition) {
+        return timed("query", () -> delegate.query(condition), this::rows);
+    }
+
+    @Override
+    public BatchResult saveAll(List<T> entities) {
+        return timed("saveAll", () -> delegate.saveAll(entities), this::none);
+    }
+
+    @Override
+    public BatchResult updateAll(List<T> entities) {
+        return timed("updateAll", () -> delegate.updateAll(entities), this::none);
+    }
+
+    @Override
+    public BatchResult deleteAll(List<String> keys) {
+        return timed("deleteAll", () -> delegate.deleteAll(keys), this::none);
+    }
+
+    @Override
+    public Stream<T> stream(QueryRequest req) {
+        return timedStream("stream", () -> delegate.stream(req));
+    }
+
+    @Override
+    public Stream<T> streamWhere(Map<String, Object> columnValues) {
+        return timedStream("streamWhere", () -> delegate.streamWhere(columnValues));
+    }
+
+    private <R> R timed(String operation, Supplier<R> call, Function<R, long[]> measure) {
+        OperationMetrics metrics = ProviderMetrics.getInstance().forOperation(entity, operation);
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            metrics.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        long[] rowsAndBytes = measure.apply(result);
+        metrics.record(nanos, rowsAndBytes[0], rowsAndBytes[1]);
+        return result;
+    }
+
+    private Stream<T> timedStream(String operation, Supplier<Stream<T>> call) {
+        OperationMetrics metrics = ProviderMetrics.getInstance().forOperation(entity, operation);
+        long start = System.nanoTime();
+        Stream<T> stream;
+        try {
+            stream = call.get();
+        } catch (RuntimeException e) {
+            metrics.recordError(System.nanoTime() - start);
+            throw e;
+        }
+        LongAdder rows = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        return stream
+                .peek(row -> {
+                    rows.increment();
+                    bytes.add(bytesOf(row));
+                })
+                .onClose(() -> metrics.record(System.nanoTime() - start, rows.sum(), bytes.sum()));
+    }
+
+    private long[] none(Object result) {
+        return new long[]{0, 0};
+    }
+
+    private long[] single(T row) {
+        return rows(Collections.singletonList(row));
+    }
+
+    private long[] optional(Optional<T> row) {
+        return rows(row.map(Collections::singletonList).orElse(Collections.emptyList()));
+    }
+
+    private long[] rows(Collection<T> rows) {
+        long bytes = 0;
+        for (T row : rows) {
+            bytes += bytesOf(row);
+        }
+        return new long[]{rows.size(), bytes};
+    }
+
+    private long bytesOf(T row) {
+        long bytes = 0;
+        for (DraftTable.Column<T> column : table.getColumns()) {
+            Object value = column.valueOf(row);
+            if (value instanceof String) {
+                bytes += 2L * ((String) value).length();
+            } else if (value != null) {
+                bytes += FIXED_VALUE_BYTES;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,30 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated read. The continuation token is {@code null} on the last page.
+ */
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String continuationToken;
+
+    KeysetPage(List<T> items, String continuationToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.continuationToken = continuationToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSQuery;
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A keyset (seek) paginated query. Instead of skipping rows the query continues after the sort-key values of the
+ * last row of the previous page, carried in an opaque continuation token, so every page costs the same.
+ * The table key is always the last sort column and breaks ties between rows with equal sort values. Only columns
+ * the table declares NOT NULL can be sort columns, so the token always carries the value stored in the table.
+ */
+public class KeysetQuery<T> {
+
+    private static final String SPEC_SEPARATOR = "\u001E";
+    private static final String VALUE_SEPARATOR = "\u001F";
+    private static final String INVALID_TOKEN_MESSAGE = "Invalid continuation token";
+
+    private final CDSQuery query;
+    private final List<SortKey<T>> sortKeys;
+    private final int pageSize;
+
+    KeysetQuery(CDSQuery query, List<SortKey<T>> sortKeys, int pageSize) {
+        this.query = query;
+        this.sortKeys = sortKeys;
+        this.pageSize = pageSize;
+    }
+
+    public CDSQuery getQuery() {
+        return query;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Builds the page from the rows returned by {@link #getQuery()}, which fetches one row more than the page size
+     * to find out whether another page follows.
+     */
+    public KeysetPage<T> toPage(List<T> rows) {
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        return new KeysetPage<>(items, encodeToken(sortKeys, items.get(items.size() - 1)));
+    }
+
+    static <T> String encodeToken(List<SortKey<T>> sortKeys, T lastRow) {
+        List<String> values = new ArrayList<>();
+        for (SortKey<T> sortKey : sortKeys) {
+            Object value = sortKey.getColumn().valueOf(lastRow);
+            if (value == null) {
+                throw new IllegalStateException("Keyset pagination needs non-null values in sort column " + sortKey.getColumn().getName());
+            }
+            values.add(sortKey.getColumn().getType().format(value));
+        }
+        String token = spec(sortKeys) + SPEC_SEPARATOR + String.join(VALUE_SEPARATOR, values);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the last sort-key values from a token. A token only fits the sort order it was issued for.
+     */
+    static <T> List<Object> decodeToken(List<SortKey<T>> sortKeys, String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(INVALID_TOKEN_MESSAGE, e);
+        }
+
+        String[] parts = decoded.split(Pattern.quote(SPEC_SEPARATOR), -1);
+        if (parts.length != 2 || !parts[0].equals(spec(sortKeys))) {
+            throw new IllegalArgumentException(INVALID_TOKEN_MESSAGE);
+        }
+        String[] rawValues = parts[1].split(Pattern.quote(VALUE_SEPARATOR), -1);
+        if (rawValues.length != sortKeys.size()) {
+            throw new IllegalArgumentException(INVALID_TOKEN_MESSAGE);
+        }
+
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < rawValues.length; i++) {
+            try {
+                values.add(sortKeys.get(i).getColumn().getType().parse(rawValues[i]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(INVALID_TOKEN_MESSAGE, e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Expands {@code (c1, c2, c3) > (v1, v2, v3)} into
+     * {@code c1 > v1 OR (c1 = v1 AND c2 > v2) OR (c1 = v1 AND c2 = v2 AND c3 > v3)}, with {@code <} for
+     * descending columns.
+     */
+    static <T> ConditionBuilder.Condition seekCondition(List<SortKey<T>> sortKeys, List<Object> lastValues) {
+        ConditionBuilder.Condition result = null;
+        for (int i = 0; i < sortKeys.size(); i++) {
+            SortKey<T> sortKey = sortKeys.get(i);
+            ConditionBuilder.ColumnName column = new ConditionBuilder().columnName(sortKey.getColumn().getName());
+            ConditionBuilder.Condition branch = sortKey.isDescending() ? column.LT(lastValues.get(i)) : column.GT(lastValues.get(i));
+            for (int j = i - 1; j >= 0; j--) {
+                branch = new ConditionBuilder().columnName(sortKeys.get(j).getColumn().getName()).EQ(lastValues.get(j)).AND(branch);
+            }
+            result = result == null ? branch : result.OR(branch);
+        }
+        return result;
+    }
+
+    /**
+     * Fingerprint shape of {@link #seekCondition}, e.g. {@code (CREATEDAT DESC, IBNID ASC) AFTER (?, ?)}, with one
+     * placeholder per last value.
+     */
+    static <T> String seekShape(List<SortKey<T>> sortKeys) {
+        List<String> terms = new ArrayList<>();
+        for (SortKey<T> sortKey : sortKeys) {
+            terms.add(QueryFingerprint.orderTerm(sortKey.getColumn().getName(), sortKey.isDescending()));
+        }
+        return "(" + String.join(", ", terms) + ") AFTER (" + String.join(", ", Collections.nCopies(sortKeys.size(), "?")) + ")";
+    }
+
+    private static <T> String spec(List<SortKey<T>> sortKeys) {
+        return sortKeys.stream()
+                .map(sortKey -> sortKey.getColumn().getName() + (sortKey.isDescending() ? ":D" : ":A"))
+                .collect(Collectors.joining(","));
+    }
+
+    static class SortKey<T> {
+
+        private final DraftTable.Column<T> column;
+        private final boolean descending;
+
+        SortKey(DraftTable.Column<T> column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        DraftTable.Column<T> getColumn() {
+            return column;
+        }
+
+        boolean isDescending() {
+            return descending;
+        }
+    }
+}
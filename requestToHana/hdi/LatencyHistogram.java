@@ -0,0 +1,55 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Recording is lock-free; the buckets are not cumulative until read through
+ * {@link #cumulativeCounts()}.
+ */
+public class LatencyHistogram {
+
+    static final double[] BUCKET_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_SECONDS.length + 1];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder count = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        double seconds = (double) nanos / TimeUnit.SECONDS.toNanos(1);
+        int bucket = 0;
+        while (bucket < BUCKET_SECONDS.length && seconds > BUCKET_SECONDS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        totalNanos.add(nanos);
+        count.increment();
+    }
+
+    /**
+     * Counts of calls at or below each bound of {@link #BUCKET_SECONDS}, followed by the count of all calls.
+     */
+    public long[] cumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public double getTotalSeconds() {
+        return (double) totalNanos.sum() / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+}
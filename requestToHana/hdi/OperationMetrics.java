@@ -0,0 +1,56 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one provider operation on one entity.
+ */
+public class OperationMetrics {
+
+    private final String entity;
+    private final String operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    OperationMetrics(String entity, String operation) {
+        this.entity = entity;
+        this.operation = operation;
+    }
+
+    public void record(long nanos, long rowCount, long bytes) {
+        latency.record(nanos);
+        rows.add(rowCount);
+        decodedBytes.add(bytes);
+    }
+
+    public void recordError(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,82 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.burberry.pptl.odata.ibn.manage.service.exception.DraftProviderException;
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSException;
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSQuery;
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSSelectQueryResult;
+import com.sap.cloud.sdk.hana.connectivity.cds.ConditionBuilder;
+import com.sap.cloud.sdk.service.prov.api.EntityData;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the page query and the count query of a list request at the same time, each on its own pooled
+ * connection, so the request waits for one round trip instead of two. The $filter is parsed once and shared by
+ * both queries.
+ */
+public class PageQuery {
+
+    private static final String CDS_EXCEPTION_MESSAGE = "Error executing CDS query";
+    private static final int SINGLE_ENTRY_INDEX = 0;
+
+    private PageQuery() {
+    }
+
+    public static <T> PageResult<T> execute(String namespace, DraftTable<T> table, QueryRequest req, Function<EntityData, T> mapper) {
+        CDSQuery pageQuery;
+        CDSQuery countQuery;
+        if (req.getQueryExpression() == null) {
+            pageQuery = CdsQueryBuilder.buildSelectAllQuery(table, req);
+            countQuery = CdsQueryBuilder.buildInlineCountQuery(table.getEntityName(), table.getKeyColumn());
+        } else {
+            ConditionBuilder.Condition condition = FilterConditionCache.getInstance().parse(req.getQueryExpression());
+            pageQuery = CdsQueryBuilder.buildSelectAllFilteredQuery(table, req, condition);
+            countQuery = CdsQueryBuilder.buildInlineCountFilteredQuery(table.getEntityName(), table.getKeyColumn(), req.getQueryExpression(), condition);
+        }
+        return execute(namespace, pageQuery, countQuery, "COUNT(" + table.getKeyColumn() + ")", mapper);
+    }
+
+    public static <T> PageResult<T> execute(String namespace, CDSQuery pageQuery, CDSQuery countQuery, String countProperty,
+                                            Function<EntityData, T> mapper) {
+        Future<Integer> count = InstrumentedExecutor.supplyAsync(() -> {
+            try {
+                CDSSelectQueryResult countResult = DataSourceManager.getInstance().select(namespace, countQuery);
+                return Integer.parseInt(countResult.getResult().get(SINGLE_ENTRY_INDEX).getElementValue(countProperty).toString());
+            } catch (CDSException e) {
+                throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
+            }
+        }, HdiExecutors.queryExecutor());
+
+        try {
+            CDSSelectQueryResult pageResult = DataSourceManager.getInstance().select(namespace, pageQuery);
+            List<T> items = pageResult
+                    .getResult()
+                    .stream()
+                    .map(mapper)
+                    .collect(Collectors.toList());
+
+            return new PageResult<>(items, count.get());
+
+        } catch (CDSException e) {
+            count.cancel(true);
+            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
+        } catch (InterruptedException e) {
+            count.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DraftProviderException(CDS_EXCEPTION_MESSAGE, e.getCause());
+        } catch (RuntimeException e) {
+            count.cancel(true);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of a list query together with the number of rows matching the query across all pages.
+ */
+public class PageResult<T> {
+
+    private final List<T> items;
+    private final int totalCount;
+
+    PageResult(List<T> items, int totalCount) {
+        this.items = Collections.unmodifiableList(items);
+        this.totalCount = totalCount;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
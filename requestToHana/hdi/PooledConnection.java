@@ -0,0 +1,92 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.rt.cds.CDSHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+class PooledConnection {
+
+    private final Connection connection;
+    private final CDSHandler handler;
+    private volatile long lastReturnedAt;
+    private volatile long borrowedAt;
+    private volatile Throwable borrowSite;
+    private volatile boolean leakReported;
+
+    PooledConnection(Connection connection, CDSHandler handler) {
+        this.connection = connection;
+        this.handler = handler;
+        this.lastReturnedAt = System.currentTimeMillis();
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    CDSHandler getHandler() {
+        return handler;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Throwable getBorrowSite() {
+        return borrowSite;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    void markBorrowed(Throwable borrowSite) {
+        this.borrowedAt = System.currentTimeMillis();
+        this.borrowSite = borrowSite;
+        this.leakReported = false;
+    }
+
+    void markReturned() {
+        this.lastReturnedAt = System.currentTimeMillis();
+        this.borrowSite = null;
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !connection.isClosed() && connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    boolean isClosed() {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    void resetState() throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    void closeQuietly() {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // the physical connection is being discarded anyway
+        }
+    }
+}
@@ -5,7 +5,9 @@ import com.sap.cloud.sdk.service.prov.api.filter.Expression;
 import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface Provider<T> {
 
@@ -18,6 +20,13 @@ public interface Provider<T> {
     Integer getInlineCountFiltered(Expression filterExpression);
     List<T> getAll(QueryRequest req);
     List<T> getAllFiltered(QueryRequest req);
+    KeysetPage<T> getPage(QueryRequest req, String continuationToken);
+    PageResult<T> getAllWithCount(QueryRequest req);
     List<T> getAllFetchedByKey(String key);
     List<T> query(ConditionBuilder.Condition condition);
+    BatchResult saveAll(List<T> entities);
+    BatchResult updateAll(List<T> entities);
+    BatchResult deleteAll(List<String> keys);
+    Stream<T> stream(QueryRequest req);
+    Stream<T> streamWhere(Map<String, Object> columnValues);
 }
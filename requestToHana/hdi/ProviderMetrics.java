@@ -0,0 +1,83 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Registry of the {@link OperationMetrics} recorded by {@link InstrumentedProvider}s, rendered in the Prometheus
+ * text format by {@link #scrape()}.
+ */
+public class ProviderMetrics {
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    public static ProviderMetrics getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private ProviderMetrics() {
+    }
+
+    private static class InstanceHolder {
+        private static final ProviderMetrics INSTANCE = new ProviderMetrics();
+    }
+
+    public OperationMetrics forOperation(String entity, String operation) {
+        return operations.computeIfAbsent(entity + "#" + operation, key -> new OperationMetrics(entity, operation));
+    }
+
+    public Collection<OperationMetrics> getOperations() {
+        List<OperationMetrics> sorted = new ArrayList<>(operations.values());
+        sorted.sort(Comparator.comparing(OperationMetrics::getEntity).thenComparing(OperationMetrics::getOperation));
+        return sorted;
+    }
+
+    public void reset() {
+        operations.clear();
+    }
+
+    public String scrape() {
+        Collection<OperationMetrics> sorted = getOperations();
+        StringBuilder text = new StringBuilder();
+
+        text.append("# HELP hdi_provider_call_seconds Latency of draft provider calls\n");
+        text.append("# TYPE hdi_provider_call_seconds histogram\n");
+        for (OperationMetrics metrics : sorted) {
+            String labels = labels(metrics);
+            long[] counts = metrics.getLatency().cumulativeCounts();
+            for (int i = 0; i < LatencyHistogram.BUCKET_SECONDS.length; i++) {
+                sample(text, "hdi_provider_call_seconds_bucket", labels + ",le=\"" + LatencyHistogram.BUCKET_SECONDS[i] + "\"", counts[i]);
+            }
+            sample(text, "hdi_provider_call_seconds_bucket", labels + ",le=\"+Inf\"", counts[counts.length - 1]);
+            sample(text, "hdi_provider_call_seconds_sum", labels, metrics.getLatency().getTotalSeconds());
+            sample(text, "hdi_provider_call_seconds_count", labels, metrics.getLatency().getCount());
+        }
+
+        counter(text, sorted, "hdi_provider_rows_total", "Rows returned by draft provider calls", OperationMetrics::getRows);
+        counter(text, sorted, "hdi_provider_decoded_bytes_total", "Estimated bytes of the drafts returned by provider calls", OperationMetrics::getDecodedBytes);
+        counter(text, sorted, "hdi_provider_errors_total", "Draft provider calls that failed", OperationMetrics::getErrors);
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, Collection<OperationMetrics> sorted, String name, String help,
+                                ToLongFunction<OperationMetrics> value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (OperationMetrics metrics : sorted) {
+            sample(text, name, labels(metrics), value.applyAsLong(metrics));
+        }
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, Object value) {
+        text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String labels(OperationMetrics metrics) {
+        return "entity=\"" + metrics.getEntity() + "\",operation=\"" + metrics.getOperation() + "\"";
+    }
+}
@@ -0,0 +1,26 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves {@link ProviderMetrics} in the Prometheus text format. Only authenticated users can read it.
+ */
+@ServletSecurity(@HttpConstraint(rolesAllowed = "**"))
+@WebServlet("/hdi/metrics")
+public class ProviderMetricsServlet extends HttpServlet {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        resp.setCharacterEncoding("UTF-8");
+        resp.getWriter().write(ProviderMetrics.getInstance().scrape());
+    }
+}
@@ -0,0 +1,158 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.api.request.OrderByExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The shape of an executed query: entity, selected columns, filter with its literals replaced by {@code ?}, and
+ * order-by. Queries that differ only in their bind values share a fingerprint, so {@link SlowQueryLog} can
+ * aggregate them.
+ * <p>
+ * CDS conditions and OData filter expressions do not expose their structure, so the filter shape is derived from
+ * their text. Objects without a readable text are fingerprinted by their type only.
+ */
+public final class QueryFingerprint {
+
+    private static final Pattern LITERAL = Pattern.compile(
+            "(?:\\b(?:guid|datetime|datetimeoffset|time|binary|X))?'(?:[^']|'')*'"
+                    + "|(?<![\\w.$])-?\\d+(?:\\.\\d+)?[mMdDfFlL]?(?![\\w.])");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern DEFAULT_TO_STRING = Pattern.compile("[\\w.$]+@\\p{XDigit}+");
+    private static final String NONE = "";
+    private static final String SQL_COLUMNS = "SQL";
+
+    private final String entity;
+    private final String columns;
+    private final String filter;
+    private final String orderBy;
+
+    private QueryFingerprint(String entity, String columns, String filter, String orderBy) {
+        this.entity = entity;
+        this.columns = columns;
+        this.filter = filter;
+        this.orderBy = orderBy;
+    }
+
+    public static QueryFingerprint of(String entityName, String[] columns, String filter, String orderBy) {
+        return new QueryFingerprint(shortName(entityName), String.join(", ", columns), filter, orderBy);
+    }
+
+    /**
+     * Fingerprints a plain SQL statement. Its literals are already bind parameters; {@code IN} lists of any length
+     * share one fingerprint.
+     */
+    public static QueryFingerprint ofSql(SqlQuery query) {
+        String sql = PLACEHOLDER_LIST.matcher(WHITESPACE.matcher(query.getSql()).replaceAll(" ")).replaceAll("?, ...");
+        return new QueryFingerprint(SQL_COLUMNS, SQL_COLUMNS, sql, NONE);
+    }
+
+    /**
+     * Shape of an equality condition on the given columns, in column order. The values are added to {@code binds}.
+     */
+    static String keysShape(Map<String, Object> keys, List<Object> binds) {
+        List<String> terms = new ArrayList<>();
+        for (Map.Entry<String, Object> key : new TreeMap<>(keys).entrySet()) {
+            terms.add(key.getKey() + " = ?");
+            binds.add(key.getValue());
+        }
+        return String.join(" AND ", terms);
+    }
+
+    /**
+     * Shape of a condition or filter expression, with the literals found in its text added to {@code binds}.
+     */
+    static String filterShape(Object filter, List<Object> binds) {
+        if (filter == null) {
+            return NONE;
+        }
+        String text = String.valueOf(filter);
+        if (DEFAULT_TO_STRING.matcher(text).matches()) {
+            return "<" + filter.getClass().getSimpleName() + ">";
+        }
+        Matcher literal = LITERAL.matcher(text);
+        StringBuffer shape = new StringBuffer();
+        while (literal.find()) {
+            binds.add(literal.group());
+            literal.appendReplacement(shape, "?");
+        }
+        literal.appendTail(shape);
+        String normalized = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return PLACEHOLDER_LIST.matcher(normalized).replaceAll("?, ...");
+    }
+
+    static String orderByShape(List<OrderByExpression> orderByExpressions) {
+        if (orderByExpressions == null || orderByExpressions.isEmpty()) {
+            return NONE;
+        }
+        List<String> terms = new ArrayList<>();
+        for (OrderByExpression orderByExpression : orderByExpressions) {
+            terms.add(orderTerm(orderByExpression.getOrderByProperty(), orderByExpression.isDescending()));
+        }
+        return String.join(", ", terms);
+    }
+
+    static String orderTerm(String column, boolean descending) {
+        return column + (descending ? " DESC" : " ASC");
+    }
+
+    static String shortName(String entityName) {
+        return entityName.substring(entityName.lastIndexOf('.') + 1);
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getColumns() {
+        return columns;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        QueryFingerprint that = (QueryFingerprint) o;
+        return entity.equals(that.entity) && columns.equals(that.columns) && filter.equals(that.filter)
+                && orderBy.equals(that.orderBy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entity, columns, filter, orderBy);
+    }
+
+    @Override
+    public String toString() {
+        if (SQL_COLUMNS.equals(columns)) {
+            return entity + ": " + filter;
+        }
+        StringBuilder text = new StringBuilder(entity).append(": SELECT ").append(columns);
+        if (!filter.isEmpty()) {
+            text.append(" WHERE ").append(filter);
+        }
+        if (!orderBy.isEmpty()) {
+            text.append(" ORDER BY ").append(orderBy);
+        }
+        return text.toString();
+    }
+}
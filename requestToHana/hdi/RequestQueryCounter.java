@@ -0,0 +1,106 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the queries per entity sent while serving one OData request and warns once per entity when a request
+ * sends more than {@code hdi.metrics.queryWarnThreshold} of them, which usually means a per-row lookup (N+1).
+ * Queries are counted where they are executed, in {@link DataSourceManager#select}, {@link CursorReader} and
+ * {@link DraftExpander}, so the lookups the providers make through each other count as well. The request boundary
+ * opens a scope with {@link #begin(String)}; {@link InstrumentedExecutor} carries the scope over to the tasks it runs.
+ */
+public class RequestQueryCounter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestQueryCounter.class);
+    private static final int WARN_THRESHOLD = Integer.getInteger("hdi.metrics.queryWarnThreshold", 10);
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private RequestQueryCounter() {
+    }
+
+    /**
+     * Starts counting for the request on the current thread. Close the scope when the request is done.
+     */
+    public static Scope begin(String requestName) {
+        Scope scope = new Scope(requestName, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void record(String entity) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.record(entity);
+        }
+    }
+
+    /**
+     * Name of the request served on the current thread, or {@code null} outside a scope.
+     */
+    static String currentRequest() {
+        Scope scope = CURRENT.get();
+        return scope == null ? null : scope.requestName;
+    }
+
+    /**
+     * Wraps a task so that it counts against the scope of the submitting thread.
+     */
+    static Runnable propagate(Runnable task) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            Scope previous = CURRENT.get();
+            CURRENT.set(scope);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(Scope previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final String requestName;
+        private final Scope previous;
+        private final Map<String, AtomicInteger> callsByEntity = new ConcurrentHashMap<>();
+
+        Scope(String requestName, Scope previous) {
+            this.requestName = requestName;
+            this.previous = previous;
+        }
+
+        public int getCalls(String entity) {
+            AtomicInteger calls = callsByEntity.get(entity);
+            return calls == null ? 0 : calls.get();
+        }
+
+        void record(String entity) {
+            int calls = callsByEntity.computeIfAbsent(entity, key -> new AtomicInteger()).incrementAndGet();
+            if (calls == WARN_THRESHOLD + 1) {
+                LOG.warn("Request {} sent more than {} queries on {}, check for per-row lookups",
+                        requestName, WARN_THRESHOLD, entity);
+            }
+        }
+
+        @Override
+        public void close() {
+            restore(previous);
+        }
+    }
+}
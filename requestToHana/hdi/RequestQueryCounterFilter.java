@@ -0,0 +1,38 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Opens a {@link RequestQueryCounter} scope around every OData request.
+ */
+@WebFilter("/odata/v2/*")
+public class RequestQueryCounterFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // nothing to configure
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        String requestName = request instanceof HttpServletRequest
+                ? ((HttpServletRequest) request).getMethod() + " " + ((HttpServletRequest) request).getRequestURI()
+                : request.toString();
+        try (RequestQueryCounter.Scope ignored = RequestQueryCounter.begin(requestName)) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,10 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T mapRow(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,249 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.hana.connectivity.cds.CDSQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the latency of executed queries per {@link QueryFingerprint} and keeps the most recent queries that
+ * took longer than {@code hdi.slowQuery.thresholdMillis}, together with the request that ran them and their bind
+ * values. Bind values are reduced to their type unless {@code hdi.slowQuery.showBinds} is set.
+ * <p>
+ * {@link CdsQueryBuilder} tags the queries it builds with their fingerprint; the tag is looked up again when
+ * {@link DataSourceManager#select(String, CDSQuery)} executes the query.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SlowQueryLog.class);
+    private static final long THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("hdi.slowQuery.thresholdMillis", 500));
+    private static final int CAPACITY = Integer.getInteger("hdi.slowQuery.capacity", 200);
+    private static final int MAX_FINGERPRINTS = Integer.getInteger("hdi.slowQuery.maxFingerprints", 1000);
+    private static final boolean SHOW_BINDS = Boolean.getBoolean("hdi.slowQuery.showBinds");
+    private static final QueryFingerprint OTHER = QueryFingerprint.of("other", new String[]{"*"}, "", "");
+    private static final Tag UNTAGGED = new Tag(QueryFingerprint.of("untagged", new String[]{"*"}, "", ""), Collections.emptyList());
+
+    private final Map<CDSQuery, Tag> tags = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<QueryFingerprint, QueryStats> stats = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    public static SlowQueryLog getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private SlowQueryLog() {
+    }
+
+    private static class InstanceHolder {
+        private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+    }
+
+    CDSQuery tag(CDSQuery query, QueryFingerprint fingerprint, List<Object> binds) {
+        tags.put(query, new Tag(fingerprint, binds));
+        return query;
+    }
+
+    Tag tagOf(CDSQuery query) {
+        Tag tag = tags.get(query);
+        return tag == null ? UNTAGGED : tag;
+    }
+
+    public void record(QueryFingerprint fingerprint, List<Object> binds, long nanos) {
+        QueryStats queryStats = stats.get(fingerprint);
+        if (queryStats == null) {
+            // bounds the registry when fingerprints are not as stable as they should be
+            queryStats = stats.size() < MAX_FINGERPRINTS
+                    ? stats.computeIfAbsent(fingerprint, QueryStats::new)
+                    : stats.computeIfAbsent(OTHER, QueryStats::new);
+        }
+        boolean slow = nanos >= THRESHOLD_NANOS;
+        queryStats.record(nanos, slow);
+        if (!slow) {
+            return;
+        }
+
+        SlowQuery slowQuery = new SlowQuery(Instant.now().minusNanos(nanos), fingerprint, render(binds), nanos, RequestQueryCounter.currentRequest());
+        LOG.debug("Slow query {}", slowQuery);
+        synchronized (slowQueries) {
+            if (slowQueries.size() == CAPACITY) {
+                slowQueries.removeLast();
+            }
+            slowQueries.addFirst(slowQuery);
+        }
+    }
+
+    /**
+     * Statistics per fingerprint, the fingerprint with the highest total latency first.
+     */
+    public List<QueryStats> getStats() {
+        List<QueryStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.comparingLong(QueryStats::getTotalNanos).reversed());
+        return sorted;
+    }
+
+    /**
+     * The slow queries still in the log, newest first.
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void reset() {
+        stats.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        text.append("# queries by fingerprint: count, total ms, mean ms, max ms, slow\n");
+        for (QueryStats queryStats : getStats()) {
+            text.append(queryStats.getCount()).append('\t')
+                    .append(millis(queryStats.getTotalNanos())).append('\t')
+                    .append(millis(queryStats.getTotalNanos() / Math.max(1, queryStats.getCount()))).append('\t')
+                    .append(millis(queryStats.getMaxNanos())).append('\t')
+                    .append(queryStats.getSlowCount()).append('\t')
+                    .append(queryStats.getFingerprint()).append('\n');
+        }
+        text.append("\n# slow queries over ").append(millis(THRESHOLD_NANOS)).append(" ms, newest first\n");
+        for (SlowQuery slowQuery : getSlowQueries()) {
+            text.append(slowQuery).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static List<String> render(List<Object> binds) {
+        List<String> rendered = new ArrayList<>(binds.size());
+        for (Object bind : binds) {
+            if (bind == null) {
+                rendered.add("null");
+            } else {
+                rendered.add(SHOW_BINDS ? bind.toString() : "<" + bind.getClass().getSimpleName() + ">");
+            }
+        }
+        return rendered;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    static class Tag {
+
+        private final QueryFingerprint fingerprint;
+        private final List<Object> binds;
+
+        Tag(QueryFingerprint fingerprint, List<Object> binds) {
+            this.fingerprint = fingerprint;
+            this.binds = binds;
+        }
+
+        QueryFingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        List<Object> getBinds() {
+            return binds;
+        }
+    }
+
+    public static class QueryStats {
+
+        private final QueryFingerprint fingerprint;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder slowCount = new LongAdder();
+
+        QueryStats(QueryFingerprint fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void record(long nanos, boolean slow) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (slow) {
+                slowCount.increment();
+            }
+        }
+
+        public QueryFingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getSlowCount() {
+            return slowCount.sum();
+        }
+    }
+
+    public static class SlowQuery {
+
+        private final Instant startedAt;
+        private final QueryFingerprint fingerprint;
+        private final List<String> binds;
+        private final long nanos;
+        private final String request;
+
+        SlowQuery(Instant startedAt, QueryFingerprint fingerprint, List<String> binds, long nanos, String request) {
+            this.startedAt = startedAt;
+            this.fingerprint = fingerprint;
+            this.binds = binds;
+            this.nanos = nanos;
+            this.request = request;
+        }
+
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+
+        public QueryFingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        public List<String> getBinds() {
+            return binds;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String getRequest() {
+            return request;
+        }
+
+        @Override
+        public String toString() {
+            return startedAt + "\t" + millis(nanos) + " ms\t" + (request == null ? "-" : request) + "\t" + fingerprint + "\tbinds=" + binds;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import javax.servlet.annotation.HttpConstraint;
+import javax.servlet.annotation.ServletSecurity;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the per-fingerprint statistics and the recent slow queries of the {@link SlowQueryLog}. Only authenticated
+ * users can read them, since they show the statements the service runs.
+ */
+@ServletSecurity(@HttpConstraint(rolesAllowed = "**"))
+@WebServlet("/hdi/slow-queries")
+public class SlowQueryLogServlet extends HttpServlet {
+
+    private static final String CONTENT_TYPE = "text/plain";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        resp.setCharacterEncoding("UTF-8");
+        resp.getWriter().write(SlowQueryLog.getInstance().report());
+    }
+}
@@ -0,0 +1,50 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain SQL statement with positional bind values, for the read paths that bypass CDS.
+ */
+public class SqlQuery {
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    public SqlQuery(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    public void bind(PreparedStatement statement) throws SQLException {
+        int index = 1;
+        for (Object parameter : parameters) {
+            if (parameter instanceof UUID) {
+                statement.setString(index++, parameter.toString());
+            } else if (parameter instanceof LocalDateTime) {
+                statement.setTimestamp(index++, Timestamp.valueOf((LocalDateTime) parameter));
+            } else {
+                statement.setObject(index++, parameter);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
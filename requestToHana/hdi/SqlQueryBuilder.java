@@ -0,0 +1,95 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import com.sap.cloud.sdk.service.prov.api.request.OrderByExpression;
+import com.sap.cloud.sdk.service.prov.api.request.QueryRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds plain SQL for the JDBC read paths. Column names coming from the request are always resolved against
+ * the {@link DraftTable}, never copied into the statement as they are.
+ */
+public class SqlQueryBuilder {
+
+    /**
+     * $filter is rejected rather than ignored, since it only translates to CDS conditions; filtered reads go
+     * through {@code getAllFiltered} or {@code streamWhere}.
+     */
+    public static SqlQuery buildSelectAllQuery(DraftTable<?> table, QueryRequest req) {
+        if (req.getQueryExpression() != null) {
+            throw new IllegalArgumentException("$filter is not supported for streamed reads of " + table.getEntityName());
+        }
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", CdsQueryBuilder.projection(table, req.getSelectProperties())))
+                .append(" FROM ").append(table.getTableName());
+        appendOrderBy(sql, table, req.getOrderByProperties());
+        appendLimit(sql, req.getTopOptionValue(), req.getSkipOptionValue());
+
+        return new SqlQuery(sql.toString(), new ArrayList<>());
+    }
+
+    public static SqlQuery buildSelectByColumnsQuery(DraftTable<?> table, Map<String, Object> columnValues) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(table.getTableName());
+        List<Object> parameters = new ArrayList<>();
+        String separator = " WHERE ";
+        for (Map.Entry<String, Object> columnValue : columnValues.entrySet()) {
+            sql.append(separator).append(resolveColumn(table, columnValue.getKey())).append(" = ?");
+            parameters.add(columnValue.getValue());
+            separator = " AND ";
+        }
+
+        return new SqlQuery(sql.toString(), parameters);
+    }
+
+    public static SqlQuery buildSelectInQuery(DraftTable<?> table, String column, List<?> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("IN list must not be empty");
+        }
+        String sql = "SELECT * FROM " + table.getTableName() + " WHERE " + resolveColumn(table, column)
+                + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")"
+                + " ORDER BY " + table.getKeyColumn();
+
+        return new SqlQuery(sql, new ArrayList<>(values));
+    }
+
+    public static SqlQuery buildDeleteInQuery(DraftTable<?> table, String column, List<?> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("IN list must not be empty");
+        }
+        String sql = "DELETE FROM " + table.getTableName() + " WHERE " + resolveColumn(table, column)
+                + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")";
+
+        return new SqlQuery(sql, new ArrayList<>(values));
+    }
+
+    static String resolveColumn(DraftTable<?> table, String property) {
+        DraftTable.Column<?> column = table.getColumn(property);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown column " + property + " of " + table.getEntityName());
+        }
+        return column.getName();
+    }
+
+    static void appendOrderBy(StringBuilder sql, DraftTable<?> table, List<OrderByExpression> orderByExpressions) {
+        String separator = " ORDER BY ";
+        for (OrderByExpression orderByExpression : orderByExpressions) {
+            sql.append(separator)
+                    .append(resolveColumn(table, orderByExpression.getOrderByProperty()))
+                    .append(orderByExpression.isDescending() ? " DESC" : " ASC");
+            separator = ", ";
+        }
+    }
+
+    static void appendLimit(StringBuilder sql, int top, int skip) {
+        if (top <= 0 && skip <= 0) {
+            return;
+        }
+        sql.append(" LIMIT ").append(top > 0 ? top : Integer.MAX_VALUE);
+        if (skip > 0) {
+            sql.append(" OFFSET ").append(skip);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.burberry.pptl.odata.ibn.manage.hdi;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk tree delete: rows removed per table and the IBNs of chunks that were rolled back.
+ */
+public class TreeDeleteResult {
+
+    private final Map<String, Integer> deletedRows = new LinkedHashMap<>();
+    private final List<String> failedIbnIds = new ArrayList<>();
+    private int committedChunks;
+    private SQLException firstError;
+
+    void recordChunk(Map<String, Integer> chunkRows) {
+        chunkRows.forEach((table, rows) -> deletedRows.merge(table, rows, Integer::sum));
+        committedChunks++;
+    }
+
+    void recordFailure(List<String> ibnIds, SQLException error) {
+        failedIbnIds.addAll(ibnIds);
+        if (firstError == null) {
+            firstError = error;
+        }
+    }
+
+    /**
+     * Deleted rows keyed by table name, in the order the tables were deleted.
+     */
+    public Map<String, Integer> getDeletedRows() {
+        return Collections.unmodifiableMap(deletedRows);
+    }
+
+    public int getDeletedRows(String tableName) {
+        return deletedRows.getOrDefault(tableName, 0);
+    }
+
+    public int getDeletedHeaders() {
+        return getDeletedRows(IBNHeaderDraftProvider.TABLE.getTableName());
+    }
+
+    public int getDeletedBoxes() {
+        return getDeletedRows(IBNBoxDraftProvider.TABLE.getTableName());
+    }
+
+    public int getDeletedItems() {
+        return getDeletedRows(IBNItemDraftProvider.TABLE.getTableName());
+    }
+
+    public int getDeletedSizes() {
+        return getDeletedRows(IBNItemSizeDraftProvider.TABLE.getTableName());
+    }
+
+    public int getCommittedChunks() {
+        return committedChunks;
+    }
+
+    public boolean hasFailures() {
+        return !failedIbnIds.isEmpty();
+    }
+
+    public List<String> getFailedIbnIds() {
+        return Collections.unmodifiableList(failedIbnIds);
+    }
+
+    public SQLException getFirstError() {
+        return firstError;
+    }
+
+    @Override
+    public String toString() {
+        return "TreeDeleteResult{deletedRows=" + deletedRows + ", committedChunks=" + committedChunks
+                + ", failedIbnIds=" + failedIbnIds.size() + '}';
+    }
+}